@@ -0,0 +1,60 @@
+package org.continuity.access.logs.splitter.benchmark;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing of access log lines, parsing of session CSV lines, and formatting of CSV lines.
+ */
+@State(Scope.Thread)
+public class AccessLogEntryBenchmark {
+
+	private String[] logLines;
+
+	private String[] csvLines;
+
+	private AccessLogEntry[] entries;
+
+	private int index = 0;
+
+	@Setup
+	public void setup() throws ParseException {
+		List<AccessLogEntry> parsed = BenchmarkFixtures.logEntries();
+
+		for (int i = 0; i < parsed.size(); i++) {
+			parsed.get(i).setDelay(i * 1000L);
+		}
+
+		logLines = BenchmarkFixtures.logLines().toArray(new String[0]);
+		entries = parsed.toArray(new AccessLogEntry[0]);
+		csvLines = parsed.stream().map(AccessLogEntry::toString).collect(Collectors.toList()).toArray(new String[0]);
+	}
+
+	private int next() {
+		index = (index + 1) % logLines.length;
+		return index;
+	}
+
+	@Benchmark
+	public AccessLogEntry fromLogLine() throws ParseException {
+		return AccessLogEntry.fromLogLine(logLines[next()]);
+	}
+
+	@Benchmark
+	public AccessLogEntry fromCsvLine() {
+		return AccessLogEntry.fromCsvLine(csvLines[next()]);
+	}
+
+	@Benchmark
+	public String toCsvLine() {
+		return entries[next()].toString();
+	}
+
+}
@@ -0,0 +1,38 @@
+package org.continuity.access.logs.splitter.benchmark;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.split.AccessLogsAnnotator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Annotation of parsed log entries, including the mapping to the endpoints. Some of the entries
+ * cannot be mapped.
+ */
+@State(Scope.Thread)
+public class AccessLogsAnnotatorBenchmark {
+
+	private AccessLogsAnnotator annotator;
+
+	private AccessLogEntry[] entries;
+
+	private int index = 0;
+
+	@Setup
+	public void setup() throws IOException, ParseException {
+		annotator = new AccessLogsAnnotator(BenchmarkFixtures.application(), BenchmarkFixtures.annotation());
+		entries = BenchmarkFixtures.logEntries().toArray(new AccessLogEntry[0]);
+	}
+
+	@Benchmark
+	public AccessLogEntry annotateLogEntry() {
+		index = (index + 1) % entries.length;
+		return annotator.annotateLogEntry(entries[index]);
+	}
+
+}
@@ -0,0 +1,53 @@
+package org.continuity.access.logs.splitter.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.idpa.annotation.ApplicationAnnotation;
+import org.continuity.idpa.application.Application;
+import org.continuity.idpa.serialization.yaml.IdpaYamlSerializer;
+
+/**
+ * Fixtures shared by the benchmarks. The log lines are taken from {@code access.log} and the IDPA
+ * from the {@code application.yml} and {@code annotation.yml} of the tests.
+ */
+public class BenchmarkFixtures {
+
+	private BenchmarkFixtures() {
+	}
+
+	public static List<String> logLines() {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(BenchmarkFixtures.class.getResourceAsStream("/access.log"), StandardCharsets.UTF_8))) {
+			return reader.lines().collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static List<AccessLogEntry> logEntries() throws ParseException {
+		List<AccessLogEntry> entries = new ArrayList<>();
+
+		for (String line : logLines()) {
+			entries.add(AccessLogEntry.fromLogLine(line));
+		}
+
+		return entries;
+	}
+
+	public static Application application() throws IOException {
+		return new IdpaYamlSerializer<>(Application.class).readFromYamlInputStream(BenchmarkFixtures.class.getResourceAsStream("/application.yml"));
+	}
+
+	public static ApplicationAnnotation annotation() throws IOException {
+		return new IdpaYamlSerializer<>(ApplicationAnnotation.class).readFromYamlInputStream(BenchmarkFixtures.class.getResourceAsStream("/annotation.yml"));
+	}
+
+}
@@ -0,0 +1,47 @@
+package org.continuity.access.logs.splitter.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.continuity.access.logs.splitter.split.IgnoredEndpointsFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Checking paths against a growing number of patterns that share a literal prefix and a
+ * wildcard.
+ */
+@State(Scope.Thread)
+public class IgnoredEndpointsFilterBenchmark {
+
+	@Param({ "5", "5000" })
+	public int numRules;
+
+	private IgnoredEndpointsFilter filter;
+
+	private String[] paths;
+
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		List<String> rules = new ArrayList<>();
+
+		for (int i = 0; i < numRules; i++) {
+			rules.add("GET /api/*/resource" + i + "/*/details");
+		}
+
+		filter = new IgnoredEndpointsFilter(rules);
+		paths = new String[] { "/api/v1/resource3/42/details", "/api/v1/resource3/42/summary", "/api/v2/other/resource/17", "/static/img/logo.png" };
+	}
+
+	@Benchmark
+	public boolean isIgnored() {
+		index = (index + 1) % paths.length;
+		return filter.isIgnored("GET", paths[index]);
+	}
+
+}
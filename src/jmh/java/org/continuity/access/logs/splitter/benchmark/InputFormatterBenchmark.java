@@ -0,0 +1,80 @@
+package org.continuity.access.logs.splitter.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.continuity.access.logs.splitter.split.InputFormatter;
+import org.continuity.idpa.annotation.DataType;
+import org.continuity.idpa.annotation.DirectListInput;
+import org.continuity.idpa.annotation.Input;
+import org.continuity.idpa.annotation.RandomStringInput;
+import org.continuity.idpa.annotation.json.JsonInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Formatting of the inputs of the test annotation, a random string, and a legacy JSON object.
+ */
+@State(Scope.Thread)
+public class InputFormatterBenchmark {
+
+	@Param({ "annotation", "random-string", "json" })
+	public String inputType;
+
+	private final InputFormatter formatter = new InputFormatter();
+
+	private Input[] inputs;
+
+	private int index = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		switch (inputType) {
+		case "annotation":
+			inputs = BenchmarkFixtures.annotation().getInputs().toArray(new Input[0]);
+			break;
+		case "random-string":
+			RandomStringInput randomString = new RandomStringInput();
+			randomString.setTemplate("user-[a-z0-9]{12}@[A-Z]{4}\\.com");
+			inputs = new Input[] { randomString };
+			break;
+		case "json":
+			inputs = new Input[] { createJsonInput() };
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown input type " + inputType);
+		}
+	}
+
+	private JsonInput createJsonInput() {
+		List<JsonInput> items = new ArrayList<>();
+
+		for (int i = 0; i < 10; i++) {
+			DirectListInput data = new DirectListInput();
+			data.setData(Arrays.asList("value-" + i));
+
+			JsonInput item = new JsonInput();
+			item.setName("field" + i);
+			item.setType((i % 2) == 0 ? DataType.STRING : DataType.NUMBER);
+			item.setInput(data);
+			items.add(item);
+		}
+
+		JsonInput json = new JsonInput();
+		json.setType(DataType.OBJECT);
+		json.setItems(items);
+		return json;
+	}
+
+	@Benchmark
+	public String getInputString() {
+		index = (index + 1) % inputs.length;
+		return formatter.getInputString(inputs[index]);
+	}
+
+}
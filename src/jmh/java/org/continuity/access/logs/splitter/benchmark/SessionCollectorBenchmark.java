@@ -0,0 +1,74 @@
+package org.continuity.access.logs.splitter.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.List;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.split.AccessLogsAnnotator;
+import org.continuity.access.logs.splitter.split.SessionCollectorShard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Handoff of log entries from the reader to a {@link SessionCollectorShard}, including the
+ * processing and writing of the sessions. One operation is one entry.
+ */
+@State(Scope.Thread)
+public class SessionCollectorBenchmark {
+
+	private static final int ENTRIES_PER_INVOCATION = 10000;
+
+	private static final int NUM_THREAD_IDS = 100;
+
+	private AccessLogEntry[] entries;
+
+	private Path outputDir;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, ParseException {
+		outputDir = Files.createTempDirectory("session-collector-benchmark");
+
+		List<AccessLogEntry> templates = BenchmarkFixtures.logEntries();
+		entries = new AccessLogEntry[ENTRIES_PER_INVOCATION];
+
+		for (int i = 0; i < ENTRIES_PER_INVOCATION; i++) {
+			AccessLogEntry template = templates.get(i % templates.size());
+			entries[i] = new AccessLogEntry("thread-" + (i % NUM_THREAD_IDS), new Date(i * 100L), template.getRequestMethod(), template.getPath());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (File file : outputDir.toFile().listFiles()) {
+			file.delete();
+		}
+
+		outputDir.toFile().delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENTRIES_PER_INVOCATION)
+	public void offerAndProcess() throws InterruptedException {
+		SessionCollectorShard shard = new SessionCollectorShard(outputDir, AccessLogsAnnotator.NOOP);
+		Thread consumer = new Thread(shard);
+		consumer.start();
+
+		for (AccessLogEntry entry : entries) {
+			shard.offer(entry);
+		}
+
+		shard.stop();
+		consumer.join();
+	}
+
+}
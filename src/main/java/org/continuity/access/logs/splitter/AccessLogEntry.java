@@ -2,31 +2,40 @@ package org.continuity.access.logs.splitter;
 
 import java.text.ParseException;
 import java.util.Date;
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.time.DateUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.continuity.access.logs.splitter.format.CsvSessionReader;
+import org.continuity.access.logs.splitter.format.CsvSessionWriter;
 
+/**
+ * A request of the access logs. Thread IDs, request methods and content types repeat heavily and
+ * are shared through bounded {@link StringDictionary dictionaries}. The timestamp is held in epoch
+ * milliseconds.
+ */
 public class AccessLogEntry {
 
-	private static final Logger LOGGER = LoggerFactory.getLogger(AccessLogEntry.class);
-
 	public static final String HEADER = "\"delay\",\"method\",\"request\",\"contenttype\",\"body\"";
 
-	private static final Pattern ACCESS_LOGS_PATTERN = Pattern.compile("(.*) - - \\[([^\\]]+)\\] \"([A-Z]+) ([^\"]+) .+\" .*");
-
-	private static final Pattern CSV_PATTERN = Pattern.compile("\"(.*)\",\"(.*)\",\"(.*)\",\"(.*)\",\"(.*)\"");
+	private static final ThreadLocal<AccessLogLineParser> LOG_LINE_PARSER = ThreadLocal.withInitial(AccessLogLineParser::new);
 
 	private static final String DELIMITER = ",";
 
 	private static final String ESCAPER = "\"";
 
+	public static final String DEFAULT_CONTENT_TYPE = "*/*";
+
+	public static final String EMPTY_BODY = "";
+
+	private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	private static final StringDictionary THREAD_IDS = new StringDictionary(64 * 1024);
+
+	private static final StringDictionary METHODS = new StringDictionary(64);
+
+	private static final StringDictionary CONTENT_TYPES = new StringDictionary(1024);
+
 	private final String threadId;
 
-	private final Date timestamp;
+	private final long timestamp;
 
 	private final String requestMethod;
 
@@ -34,49 +43,57 @@ public class AccessLogEntry {
 
 	private long delay;
 
-	private String contentType = "*/*";
+	private String contentType = DEFAULT_CONTENT_TYPE;
 
-	private String body = "";
+	private String body = EMPTY_BODY;
 
-	public AccessLogEntry(String threadId, Date timestamp, String requestMethod, String path) {
-		this.threadId = threadId;
+	public AccessLogEntry(String threadId, long timestamp, String requestMethod, String path) {
+		this.threadId = THREAD_IDS.intern(threadId);
 		this.timestamp = timestamp;
-		this.requestMethod = requestMethod;
+		this.requestMethod = METHODS.intern(requestMethod);
 		this.path = path;
 	}
 
-	public static AccessLogEntry fromLogLine(String line) throws ParseException {
-		Matcher matcher = ACCESS_LOGS_PATTERN.matcher(line);
+	public AccessLogEntry(String threadId, Date timestamp, String requestMethod, String path) {
+		this(threadId, timestamp == null ? NO_TIMESTAMP : timestamp.getTime(), requestMethod, path);
+	}
 
-		if (matcher.find()) {
-			Date timestamp = DateUtils.parseDateStrictly(matcher.group(2), Locale.ENGLISH, "dd/MMM/yyyy:HH:mm:ss Z");
-			return new AccessLogEntry(matcher.group(1), timestamp, matcher.group(3), matcher.group(4));
-		} else {
-			return null;
-		}
+	public static AccessLogEntry fromLogLine(String line) throws ParseException {
+		return LOG_LINE_PARSER.get().parse(line);
 	}
 
+	/**
+	 * Parses a line written by the {@link CsvSessionWriter}.
+	 *
+	 * @param line
+	 *            The line.
+	 * @return The entry or {@code null} if the line cannot be parsed.
+	 */
 	public static AccessLogEntry fromCsvLine(String line) {
-		Matcher matcher = CSV_PATTERN.matcher(line);
-
-		if (matcher.find()) {
-			AccessLogEntry entry = new AccessLogEntry(null, null, matcher.group(2), matcher.group(3));
-			entry.setDelay(Long.parseLong(matcher.group(1)));
-			entry.setContentType(matcher.group(4));
-			entry.setBody(matcher.group(5));
-
-			return entry;
-		} else {
-			LOGGER.error("Cannot parse CSV line {}!", line);
-			return null;
-		}
+		return CsvSessionReader.parseLine(line);
 	}
 
 	public String getThreadId() {
 		return threadId;
 	}
 
+	/**
+	 * Gets the timestamp as a new {@link Date}. Prefer {@link #getTimestampMillis()}, which does not
+	 * allocate.
+	 *
+	 * @return The timestamp or {@code null} if the entry has none, e.g., because it has been read
+	 *         from a session file.
+	 */
 	public Date getTimestamp() {
+		return timestamp == NO_TIMESTAMP ? null : new Date(timestamp);
+	}
+
+	/**
+	 * Gets the timestamp in epoch milliseconds.
+	 *
+	 * @return The timestamp or {@link Long#MIN_VALUE} if the entry has none.
+	 */
+	public long getTimestampMillis() {
 		return timestamp;
 	}
 
@@ -96,12 +113,27 @@ public class AccessLogEntry {
 		this.delay = delay;
 	}
 
+	/**
+	 * Creates a copy of this entry with a different delay.
+	 *
+	 * @param delay
+	 *            The delay of the copy.
+	 * @return The copy.
+	 */
+	public AccessLogEntry withDelay(long delay) {
+		AccessLogEntry copy = new AccessLogEntry(threadId, timestamp, requestMethod, path);
+		copy.setDelay(delay);
+		copy.setContentType(contentType);
+		copy.setBody(body);
+		return copy;
+	}
+
 	public String getContentType() {
 		return contentType;
 	}
 
 	public void setContentType(String contentType) {
-		this.contentType = contentType;
+		this.contentType = DEFAULT_CONTENT_TYPE.equals(contentType) ? DEFAULT_CONTENT_TYPE : CONTENT_TYPES.intern(contentType);
 	}
 
 	public String getBody() {
@@ -109,7 +141,7 @@ public class AccessLogEntry {
 	}
 
 	public void setBody(String body) {
-		this.body = body;
+		this.body = EMPTY_BODY.equals(body) ? EMPTY_BODY : body;
 	}
 
 	@Override
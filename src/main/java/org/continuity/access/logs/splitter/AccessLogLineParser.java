@@ -0,0 +1,301 @@
+package org.continuity.access.logs.splitter;
+
+import java.text.ParseException;
+import java.util.Locale;
+
+import org.apache.commons.lang3.time.DateUtils;
+
+/**
+ * Hand-written tokenizer for access log lines of the form
+ * {@code <thread id> - - [dd/MMM/yyyy:HH:mm:ss Z] "METHOD path PROTOCOL" ...}. It reads the
+ * fields directly from a character buffer and yields the same entries as the former regular
+ * expression {@code (.*) - - \[([^\]]+)\] "([A-Z]+) ([^"]+) .+" .*}. <br>
+ * The parsed timestamp of the last line is cached, as consecutive lines mostly share the same
+ * second and offset. Hence, instances are <b>not thread-safe</b> and should be used per thread.
+ */
+public class AccessLogLineParser {
+
+	private static final String DATE_FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
+
+	private static final String SEPARATOR = " - - [";
+
+	private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+	private static final int TIMESTAMP_LENGTH = "10/Oct/2000:13:55:36 -0700".length();
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+	private final char[] cachedTimestamp = new char[TIMESTAMP_LENGTH];
+
+	private int cachedTimestampLength = -1;
+
+	private long cachedMillis;
+
+	/**
+	 * Gets the timestamp cached by the last line in the standard format.
+	 *
+	 * @return The epoch millis or {@link Long#MIN_VALUE} if no timestamp has been cached, yet.
+	 */
+	long getCachedMillis() {
+		return cachedTimestampLength < 0 ? Long.MIN_VALUE : cachedMillis;
+	}
+
+	/**
+	 * Parses a complete access log line.
+	 *
+	 * @param line
+	 *            The line.
+	 * @return The parsed entry or {@code null} if the line does not have the expected format.
+	 * @throws ParseException
+	 *             If the timestamp cannot be parsed.
+	 */
+	public AccessLogEntry parse(CharSequence line) throws ParseException {
+		return parse(line, 0, line.length());
+	}
+
+	/**
+	 * Parses an access log line that is stored in the given range of a buffer. The range must not
+	 * contain line terminators.
+	 *
+	 * @param buffer
+	 *            The buffer holding the line.
+	 * @param start
+	 *            The index of the first character of the line (inclusive).
+	 * @param end
+	 *            The index after the last character of the line (exclusive).
+	 * @return The parsed entry or {@code null} if the line does not have the expected format.
+	 * @throws ParseException
+	 *             If the timestamp cannot be parsed.
+	 */
+	public AccessLogEntry parse(CharSequence buffer, int start, int end) throws ParseException {
+		int lastQuoteSpace = lastIndexOfQuoteSpace(buffer, start, end);
+
+		if (lastQuoteSpace < 0) {
+			return null;
+		}
+
+		// the thread ID is matched greedily, i.e., the last matching separator wins
+		int separator = lastIndexOf(buffer, SEPARATOR, start, end);
+
+		while (separator >= 0) {
+			AccessLogEntry entry = parseFromSeparator(buffer, start, end, separator, lastQuoteSpace);
+
+			if (entry != null) {
+				return entry;
+			}
+
+			separator = lastIndexOf(buffer, SEPARATOR, start, separator + SEPARATOR.length() - 1);
+		}
+
+		return null;
+	}
+
+	private AccessLogEntry parseFromSeparator(CharSequence buffer, int start, int end, int separator, int lastQuoteSpace) throws ParseException {
+		int timestampStart = separator + SEPARATOR.length();
+		int timestampEnd = indexOf(buffer, ']', timestampStart, end);
+
+		if ((timestampEnd <= timestampStart) || ((timestampEnd + 2) >= end) || (buffer.charAt(timestampEnd + 1) != ' ') || (buffer.charAt(timestampEnd + 2) != '"')) {
+			return null;
+		}
+
+		int methodStart = timestampEnd + 3;
+		int methodEnd = methodStart;
+
+		while ((methodEnd < end) && (buffer.charAt(methodEnd) >= 'A') && (buffer.charAt(methodEnd) <= 'Z')) {
+			methodEnd++;
+		}
+
+		if ((methodEnd == methodStart) || (methodEnd >= end) || (buffer.charAt(methodEnd) != ' ')) {
+			return null;
+		}
+
+		int pathStart = methodEnd + 1;
+		int quote = indexOf(buffer, '"', pathStart, end);
+		int pathLimit = Math.min(quote < 0 ? end : quote, lastQuoteSpace - 1);
+		int pathEnd = -1;
+
+		// the path is matched greedily up to the last space that is followed by at least one
+		// character, a quote, and a space
+		for (int i = pathLimit - 1; i > pathStart; i--) {
+			if (buffer.charAt(i) == ' ') {
+				pathEnd = i;
+				break;
+			}
+		}
+
+		if (pathEnd < 0) {
+			return null;
+		}
+
+		long millis = parseTimestamp(buffer, timestampStart, timestampEnd);
+
+		return new AccessLogEntry(buffer.subSequence(start, separator).toString(), millis, buffer.subSequence(methodStart, methodEnd).toString(),
+				buffer.subSequence(pathStart, pathEnd).toString());
+	}
+
+	private long parseTimestamp(CharSequence buffer, int start, int end) throws ParseException {
+		int length = end - start;
+
+		if (length == cachedTimestampLength) {
+			boolean equal = true;
+
+			for (int i = 0; i < length; i++) {
+				if (cachedTimestamp[i] != buffer.charAt(start + i)) {
+					equal = false;
+					break;
+				}
+			}
+
+			if (equal) {
+				return cachedMillis;
+			}
+		}
+
+		long millis = parseStandardTimestamp(buffer, start, end);
+
+		if (millis == Long.MIN_VALUE) {
+			// uncommon format, e.g., a named time zone - leave it to the generic parser
+			return DateUtils.parseDateStrictly(buffer.subSequence(start, end).toString(), Locale.ENGLISH, DATE_FORMAT).getTime();
+		}
+
+		for (int i = 0; i < length; i++) {
+			cachedTimestamp[i] = buffer.charAt(start + i);
+		}
+
+		cachedTimestampLength = length;
+		cachedMillis = millis;
+
+		return millis;
+	}
+
+	/**
+	 * Parses timestamps such as {@code 10/Oct/2000:13:55:36 -0700}. Years before 1970 are left to
+	 * the generic parser, which switches to the Julian calendar for historic dates.
+	 *
+	 * @return The epoch millis or {@link Long#MIN_VALUE} if the timestamp does not have exactly
+	 *         this format or is out of range.
+	 */
+	private long parseStandardTimestamp(CharSequence buffer, int start, int end) {
+		if (((end - start) != TIMESTAMP_LENGTH) || (buffer.charAt(start + 2) != '/') || (buffer.charAt(start + 6) != '/') || (buffer.charAt(start + 11) != ':')
+				|| (buffer.charAt(start + 14) != ':') || (buffer.charAt(start + 17) != ':') || (buffer.charAt(start + 20) != ' ')) {
+			return Long.MIN_VALUE;
+		}
+
+		int day = digits(buffer, start, 2);
+		int month = month(buffer, start + 3);
+		int year = digits(buffer, start + 7, 4);
+		int hour = digits(buffer, start + 12, 2);
+		int minute = digits(buffer, start + 15, 2);
+		int second = digits(buffer, start + 18, 2);
+
+		char sign = buffer.charAt(start + 21);
+		int offsetHours = digits(buffer, start + 22, 2);
+		int offsetMinutes = digits(buffer, start + 24, 2);
+
+		if ((day < 1) || (month < 1) || (year < 1970) || (hour < 0) || (hour > 23) || (minute < 0) || (minute > 59) || (second < 0) || (second > 59) || ((sign != '+') && (sign != '-'))
+				|| (offsetHours < 0) || (offsetHours > 23) || (offsetMinutes < 0) || (offsetMinutes > 59) || (day > daysInMonth(year, month))) {
+			return Long.MIN_VALUE;
+		}
+
+		long offset = ((offsetHours * 60) + offsetMinutes) * MILLIS_PER_MINUTE;
+		long localMillis = (((((epochDay(year, month, day) * 24) + hour) * 60) + minute) * MILLIS_PER_MINUTE) + (second * 1000L);
+
+		return sign == '+' ? localMillis - offset : localMillis + offset;
+	}
+
+	private static int digits(CharSequence buffer, int start, int count) {
+		int value = 0;
+
+		for (int i = start; i < (start + count); i++) {
+			char c = buffer.charAt(i);
+
+			if ((c < '0') || (c > '9')) {
+				return -1;
+			}
+
+			value = (value * 10) + (c - '0');
+		}
+
+		return value;
+	}
+
+	private static int month(CharSequence buffer, int start) {
+		for (int i = 0; i < MONTHS.length; i++) {
+			String month = MONTHS[i];
+
+			if ((month.charAt(0) == buffer.charAt(start)) && (month.charAt(1) == buffer.charAt(start + 1)) && (month.charAt(2) == buffer.charAt(start + 2))) {
+				return i + 1;
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean isLeapYear(int year) {
+		return ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return isLeapYear(year) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/**
+	 * Days since 1970-01-01 of a date in the proleptic Gregorian calendar.
+	 */
+	private static long epochDay(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - (era * 400);
+		int dayOfYear = ((((153 * (month > 2 ? month - 3 : month + 9)) + 2) / 5) + day) - 1;
+		int dayOfEra = ((yearOfEra * 365) + (yearOfEra / 4)) - (yearOfEra / 100) + dayOfYear;
+		return ((era * 146097L) + dayOfEra) - 719468;
+	}
+
+	private static int indexOf(CharSequence buffer, char c, int from, int end) {
+		for (int i = from; i < end; i++) {
+			if (buffer.charAt(i) == c) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Last index of {@code str} that is fully contained in {@code [start, end)}.
+	 */
+	private static int lastIndexOf(CharSequence buffer, String str, int start, int end) {
+		outer: for (int i = end - str.length(); i >= start; i--) {
+			for (int j = 0; j < str.length(); j++) {
+				if (buffer.charAt(i + j) != str.charAt(j)) {
+					continue outer;
+				}
+			}
+
+			return i;
+		}
+
+		return -1;
+	}
+
+	private static int lastIndexOfQuoteSpace(CharSequence buffer, int start, int end) {
+		for (int i = end - 2; i >= start; i--) {
+			if ((buffer.charAt(i) == '"') && (buffer.charAt(i + 1) == ' ')) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+}
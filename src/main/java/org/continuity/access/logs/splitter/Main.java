@@ -1,19 +1,39 @@
 package org.continuity.access.logs.splitter;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.continuity.access.logs.splitter.combine.SessionsCombiner;
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.generate.AccessLogsGenerator;
+import org.continuity.access.logs.splitter.metrics.MetricsReporter;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
 import org.continuity.access.logs.splitter.split.AccessLogsAnnotator;
 import org.continuity.access.logs.splitter.split.AccessLogsSplitter;
 import org.continuity.idpa.annotation.ApplicationAnnotation;
 import org.continuity.idpa.application.Application;
 import org.continuity.idpa.serialization.yaml.IdpaYamlSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Main {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
+
+	private static final String OPTION_PREFIX = "--";
+
+	private static final long DEFAULT_METRICS_INTERVAL = 10;
+
 	public static void main(String[] args) throws IOException, InterruptedException {
 		switch (args[0]) {
 		case "split":
@@ -22,17 +42,24 @@ public class Main {
 		case "combine":
 			combineMain(Arrays.copyOfRange(args, 1, args.length));
 			break;
+		case "generate":
+			generateMain(Arrays.copyOfRange(args, 1, args.length));
+			break;
 		default:
 			throw new IllegalArgumentException("Unknown command " + args[0]);
 		}
 	}
 
-	private static void splitMain(String[] args) throws IOException, InterruptedException {
+	private static void splitMain(String[] allArgs) throws IOException, InterruptedException {
+		Map<String, String> options = parseOptions(allArgs);
+		String[] args = positionalArgs(allArgs);
+
 		if (args.length < 2) {
 			throw new IllegalArgumentException("The first two arguments after the command need to be the path to the access logs file and the output directory!");
 		}
 
-		Path pathToLogs = Paths.get(args[0]);
+		// the access logs of several nodes are separated like a class path
+		List<Path> pathsToLogs = Arrays.stream(args[0].split(File.pathSeparator)).map(Paths::get).collect(Collectors.toList());
 		Path outputDir = Paths.get(args[1]);
 
 		AccessLogsSplitter splitter;
@@ -48,15 +75,142 @@ public class Main {
 
 		if (args.length >= 3) {
 			Path pathToIgnored = Paths.get(args[2]);
-			splitter = new AccessLogsSplitter(pathToLogs, outputDir, annotator, pathToIgnored);
+			splitter = new AccessLogsSplitter(pathsToLogs, outputDir, annotator, pathToIgnored);
 		} else {
-			splitter = new AccessLogsSplitter(pathToLogs, outputDir, annotator);
+			splitter = new AccessLogsSplitter(pathsToLogs, outputDir, annotator, null);
+		}
+
+		String parallel = options.get("parallel");
+
+		if (parallel != null) {
+			splitter.setParsingThreads(parallel.isEmpty() ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(parallel));
+		}
+
+		String collectors = options.get("collectors");
+
+		if (collectors != null) {
+			splitter.setCollectorThreads(Integer.parseInt(collectors));
+		}
+
+		if (options.containsKey("format")) {
+			splitter.setOutputFormat(parseFormat(options.get("format")));
+		}
+
+		if (options.containsKey("archive")) {
+			splitter.setArchive(true);
+			splitter.setCompressArchive(options.containsKey("compress"));
+		}
+
+		if (options.containsKey("from") || options.containsKey("to")) {
+			long from = options.containsKey("from") ? Instant.parse(options.get("from")).toEpochMilli() : Long.MIN_VALUE;
+			long to = options.containsKey("to") ? Instant.parse(options.get("to")).toEpochMilli() : Long.MAX_VALUE;
+			splitter.setTimeWindow(from, to);
+		}
+
+		if (options.containsKey("max-open-files")) {
+			splitter.setMaxOpenFiles(Integer.parseInt(options.get("max-open-files")));
+		}
+
+		String sortMemory = options.get("sort-memory");
+
+		if (sortMemory != null) {
+			// in MB, as the budget is rough anyway
+			splitter.setSortMemory(Long.parseLong(sortMemory) * 1024 * 1024);
+		}
+
+		if (options.containsKey("sort-dir")) {
+			splitter.setSortDirectory(Paths.get(options.get("sort-dir")));
+		}
+
+		String checkpoint = options.get("checkpoint");
+
+		if (checkpoint != null) {
+			splitter.setCheckpointFile(Paths.get(checkpoint));
+		}
+
+		String checkpointInterval = options.get("checkpoint-interval");
+
+		if (checkpointInterval != null) {
+			splitter.setCheckpointInterval(Long.parseLong(checkpointInterval) * 1000);
+		}
+
+		if (options.containsKey("follow")) {
+			splitter.setFollow(true);
+
+			// finish the open sessions on Ctrl+C
+			Thread mainThread = Thread.currentThread();
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					splitter.stop();
+					mainThread.join();
+				} catch (IOException | InterruptedException e) {
+					LOGGER.error("Could not finish the split!", e);
+				}
+			}));
+		}
+
+		MetricsReporter reporter = createMetricsReporter(options);
+
+		try {
+			splitter.parseAndSplit();
+		} finally {
+			reporter.close();
+		}
+	}
+
+	/**
+	 * Parses {@code csv} or {@code binary}.
+	 */
+	private static SessionFormat parseFormat(String format) {
+		try {
+			return SessionFormat.valueOf(format.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown session format '" + format + "'! Expected one of "
+					+ Arrays.stream(SessionFormat.values()).map(f -> f.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", ")) + ".");
+		}
+	}
+
+	/**
+	 * Creates a reporter according to {@code --metrics=<JSON file>} and
+	 * {@code --metrics-interval=<seconds>}.
+	 */
+	private static MetricsReporter createMetricsReporter(Map<String, String> options) {
+		String interval = options.get("metrics-interval");
+		String jsonFile = options.get("metrics");
+
+		return new MetricsReporter(PipelineMetrics.get(), interval == null ? DEFAULT_METRICS_INTERVAL : Long.parseLong(interval), jsonFile == null ? null : Paths.get(jsonFile));
+	}
+
+	/**
+	 * Collects all arguments of the form {@code --name=value} or {@code --name}. The latter are
+	 * mapped to an empty value.
+	 */
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+
+		for (String arg : args) {
+			if (arg.startsWith(OPTION_PREFIX)) {
+				int separator = arg.indexOf('=');
+
+				if (separator < 0) {
+					options.put(arg.substring(OPTION_PREFIX.length()), "");
+				} else {
+					options.put(arg.substring(OPTION_PREFIX.length(), separator), arg.substring(separator + 1));
+				}
+			}
 		}
 
-		splitter.parseAndSplit();
+		return options;
 	}
 
-	private static void combineMain(String[] args) throws InterruptedException {
+	private static String[] positionalArgs(String[] args) {
+		return Arrays.stream(args).filter(arg -> !arg.startsWith(OPTION_PREFIX)).toArray(String[]::new);
+	}
+
+	private static void combineMain(String[] allArgs) throws IOException, InterruptedException {
+		Map<String, String> options = parseOptions(allArgs);
+		String[] args = positionalArgs(allArgs);
+
 		if (args.length < 4) {
 			throw new IllegalArgumentException(
 					"The first four arguments after the command need to be the path to the sessions CSV files, the output directory, the number of parallel sessions, and the number of iterations!");
@@ -68,7 +222,72 @@ public class Main {
 		int numIterations = Integer.parseInt(args[3]);
 
 		SessionsCombiner combiner = new SessionsCombiner(pathToSessions, outputDir, numSessions, numIterations);
-		combiner.combine();
+
+		if (options.containsKey("format")) {
+			combiner.setOutputFormat(parseFormat(options.get("format")));
+		}
+
+		if (options.containsKey("threads")) {
+			combiner.setThreads(Integer.parseInt(options.get("threads")));
+		}
+
+		MetricsReporter reporter = createMetricsReporter(options);
+
+		try {
+			combiner.combine();
+		} finally {
+			reporter.close();
+		}
+	}
+
+	private static void generateMain(String[] allArgs) throws IOException {
+		Map<String, String> options = parseOptions(allArgs);
+		String[] args = positionalArgs(allArgs);
+
+		if (args.length < 2) {
+			throw new IllegalArgumentException(
+					"The first two arguments after the command need to be the path to the access logs file to be generated and the number of lines! Optionally, the path to an application model can be passed.");
+		}
+
+		AccessLogsGenerator generator = new AccessLogsGenerator(Paths.get(args[0]), Long.parseLong(args[1]));
+
+		if (args.length >= 3) {
+			generator.addEndpoints(new IdpaYamlSerializer<>(Application.class).readFromYaml(args[2]));
+		}
+
+		if (options.containsKey("endpoints")) {
+			generator.addEndpoints(Paths.get(options.get("endpoints")));
+		}
+
+		if (options.containsKey("threads")) {
+			generator.setNumThreadIds(Integer.parseInt(options.get("threads")));
+		}
+
+		if (options.containsKey("think-time")) {
+			generator.setThinkTime(options.get("think-time"));
+		}
+
+		if (options.containsKey("session-gap")) {
+			generator.setSessionGapProbability(Double.parseDouble(options.get("session-gap")));
+		}
+
+		if (options.containsKey("malformed")) {
+			generator.setMalformedProbability(Double.parseDouble(options.get("malformed")));
+		}
+
+		if (options.containsKey("seed")) {
+			generator.setSeed(Long.parseLong(options.get("seed")));
+		}
+
+		if (options.containsKey("start")) {
+			generator.setStart(Instant.parse(options.get("start")));
+		}
+
+		if (options.containsKey("offset")) {
+			generator.setOffset(ZoneOffset.of(options.get("offset")));
+		}
+
+		generator.generate();
 	}
 
 }
@@ -0,0 +1,51 @@
+package org.continuity.access.logs.splitter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe dictionary for strings that repeat heavily, e.g., request methods. Equal strings are
+ * replaced by a single shared instance, so that the copies can be collected early. The number of
+ * entries is bounded. If the dictionary is full, strings are returned as they are.
+ */
+public class StringDictionary {
+
+	private final ConcurrentHashMap<String, String> entries = new ConcurrentHashMap<>();
+
+	private final int maxSize;
+
+	public StringDictionary(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the shared instance of the string.
+	 *
+	 * @param value
+	 *            The string. Can be {@code null}.
+	 * @return The shared instance or {@code value} itself if it is not held and the dictionary is
+	 *         full.
+	 */
+	public String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+
+		String shared = entries.get(value);
+
+		if (shared != null) {
+			return shared;
+		}
+
+		if (entries.size() >= maxSize) {
+			return value;
+		}
+
+		shared = entries.putIfAbsent(value, value);
+		return shared == null ? value : shared;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+}
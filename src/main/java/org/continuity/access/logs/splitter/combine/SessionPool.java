@@ -0,0 +1,155 @@
+package org.continuity.access.logs.splitter.combine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.format.SessionArchive;
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only pool of all sessions of a directory, which is loaded once and shared by all
+ * {@link SessionsCombinerWorker}s. The sessions are ordered by file name, so that the random
+ * sampling of the workers is reproducible.
+ */
+public class SessionPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SessionPool.class);
+
+	private final List<Session> sessions;
+
+	private SessionPool(List<Session> sessions) {
+		this.sessions = sessions;
+	}
+
+	/**
+	 * Loads all session files of the directory in parallel. The format of each file is determined
+	 * by its extension. If the directory holds a {@link SessionArchive}, the sessions are read from
+	 * the archive instead. Sessions without entries are skipped.
+	 *
+	 * @param pathToSessions
+	 *            The directory holding the session files.
+	 * @return The pool.
+	 * @throws IOException
+	 *             If a file cannot be read.
+	 */
+	public static SessionPool load(Path pathToSessions) throws IOException {
+		if (SessionArchive.isArchive(pathToSessions)) {
+			return loadArchive(pathToSessions);
+		}
+
+		// skips directories, e.g., the runs of a killed external sort
+		List<String> filenames = Arrays.asList(pathToSessions.toFile().list((dir, name) -> Files.isRegularFile(dir.toPath().resolve(name))));
+		Collections.sort(filenames);
+
+		LOGGER.info("Loading {} sessions from {}...", filenames.size(), pathToSessions);
+
+		try {
+			List<Session> sessions = filenames.parallelStream().map(pathToSessions::resolve).map(SessionPool::loadSession).filter(Objects::nonNull).collect(Collectors.toList());
+			return new SessionPool(Collections.unmodifiableList(sessions));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static SessionPool loadArchive(Path pathToSessions) throws IOException {
+		try (SessionArchive archive = SessionArchive.open(pathToSessions)) {
+			LOGGER.info("Loading {} sessions from the archive {}...", archive.size(), pathToSessions);
+
+			List<Session> sessions = IntStream.range(0, archive.size()).parallel().mapToObj(i -> loadSession(archive, i)).filter(Objects::nonNull).collect(Collectors.toList());
+			return new SessionPool(Collections.unmodifiableList(sessions));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static Session loadSession(SessionArchive archive, int index) {
+		List<AccessLogEntry> entries;
+
+		try {
+			entries = archive.read(index);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (entries.isEmpty()) {
+			LOGGER.warn("Skipping empty session {}.", archive.getName(index));
+			return null;
+		}
+
+		return new Session(entries);
+	}
+
+	private static Session loadSession(Path file) {
+		List<AccessLogEntry> entries;
+
+		try {
+			entries = SessionFormat.forFile(file).read(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (entries.isEmpty()) {
+			LOGGER.warn("Skipping empty session {}.", file);
+			return null;
+		}
+
+		return new Session(entries);
+	}
+
+	public int size() {
+		return sessions.size();
+	}
+
+	public Session get(int index) {
+		return sessions.get(index);
+	}
+
+	/**
+	 * An immutable session consisting of at least one entry. The entries must not be modified.
+	 */
+	public static class Session {
+
+		private final AccessLogEntry[] entries;
+
+		private final long totalDelay;
+
+		private Session(List<AccessLogEntry> entries) {
+			this.entries = entries.toArray(new AccessLogEntry[entries.size()]);
+			this.totalDelay = entries.stream().mapToLong(AccessLogEntry::getDelay).sum();
+		}
+
+		public int size() {
+			return entries.length;
+		}
+
+		public AccessLogEntry get(int index) {
+			return entries[index];
+		}
+
+		public AccessLogEntry getLast() {
+			return entries[entries.length - 1];
+		}
+
+		/**
+		 * Returns the sum of all delays, including the delay of the last entry.
+		 *
+		 * @return The total delay in milliseconds.
+		 */
+		public long getTotalDelay() {
+			return totalDelay;
+		}
+
+	}
+
+}
@@ -1,17 +1,34 @@
 package org.continuity.access.logs.splitter.combine;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import org.continuity.access.logs.splitter.format.SessionFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Combines the split sessions to a number of parallel sessions per iteration. The sessions of all
+ * iterations are combined by a fixed number of threads. {@link #combine()} only returns after
+ * each session has been written and fails if any of them could not be written.
+ */
 public class SessionsCombiner {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(SessionsCombiner.class);
 
+	/** Number of progress reports over the whole combination. */
+	private static final int PROGRESS_STEPS = 10;
+
 	private final Path pathToSessions;
 
 	private final Path outputDir;
@@ -20,7 +37,10 @@ public class SessionsCombiner {
 
 	private final int numIterations;
 
-	private final ExecutorService threadPool = Executors.newCachedThreadPool();
+	private SessionFormat outputFormat = SessionFormat.CSV;
+
+	// writing the sessions blocks on I/O, so we use more threads than cores
+	private int numThreads = 2 * Runtime.getRuntime().availableProcessors();
 
 	public SessionsCombiner(Path pathToSessions, Path outputDir, int numSessions, int numIterations) {
 		this.pathToSessions = pathToSessions;
@@ -29,22 +49,96 @@ public class SessionsCombiner {
 		this.numIterations = numIterations;
 	}
 
-	public void combine() throws InterruptedException {
+	/**
+	 * Sets the format of the combined sessions. The format of the input sessions is determined
+	 * per file. Defaults to {@link SessionFormat#CSV}.
+	 *
+	 * @param outputFormat
+	 *            The format.
+	 */
+	public void setOutputFormat(SessionFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	/**
+	 * Sets the number of threads combining the sessions. Defaults to twice the number of
+	 * available processors.
+	 *
+	 * @param numThreads
+	 *            The number of threads.
+	 */
+	public void setThreads(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("The number of threads needs to be positive, but was " + numThreads + "!");
+		}
+
+		this.numThreads = numThreads;
+	}
+
+	public void combine() throws IOException, InterruptedException {
+		SessionPool sessions = SessionPool.load(pathToSessions);
+
+		if (sessions.size() == 0) {
+			LOGGER.error("There are no sessions in {}!", pathToSessions);
+			return;
+		}
+
 		for (int iteration = 1; iteration <= numIterations; iteration++) {
-			LOGGER.info("Combining for iteration {}...", iteration);
-			combineIteration(iteration);
+			Files.createDirectories(outputDir.resolve("iteration-" + iteration));
 		}
 
-		threadPool.shutdown();
-		threadPool.awaitTermination(1, TimeUnit.MINUTES);
+		int numTasks = numIterations * numSessions;
+		LOGGER.info("Combining {} sessions in {} iterations with {} threads...", numSessions, numIterations, numThreads);
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(numThreads, Math.max(numTasks, 1)));
+		CompletionService<Integer> completion = new ExecutorCompletionService<>(threadPool);
+
+		try {
+			for (int iteration = 1; iteration <= numIterations; iteration++) {
+				for (int session = 1; session <= numSessions; session++) {
+					completion.submit(new SessionsCombinerWorker(sessions, outputDir, iteration, session, outputFormat), iteration);
+				}
+			}
+
+			awaitCompletion(completion, numTasks);
+		} finally {
+			threadPool.shutdownNow();
+			threadPool.awaitTermination(1, TimeUnit.MINUTES);
+		}
+
+		LOGGER.info("Combined {} sessions.", numTasks);
 	}
 
-	private void combineIteration(int iteration) {
-		outputDir.resolve("iteration-" + iteration).toFile().mkdirs();
+	/**
+	 * Waits for all workers and reports the progress. Stops at the first failing worker.
+	 */
+	private void awaitCompletion(CompletionService<Integer> completion, int numTasks) throws IOException, InterruptedException {
+		int[] remainingPerIteration = new int[numIterations + 1];
+		Arrays.fill(remainingPerIteration, numSessions);
+
+		int reportEvery = Math.max(numTasks / PROGRESS_STEPS, 1);
+
+		for (int completed = 1; completed <= numTasks; completed++) {
+			Future<Integer> result = completion.take();
+			int iteration;
+
+			try {
+				iteration = result.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof UncheckedIOException) {
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				}
+
+				throw new IllegalStateException("Combining a session failed!", e.getCause());
+			}
+
+			if (--remainingPerIteration[iteration] == 0) {
+				LOGGER.debug("Iteration {} is complete.", iteration);
+			}
 
-		for (int session = 1; session <= numSessions; session++) {
-			SessionsCombinerWorker worker = new SessionsCombinerWorker(pathToSessions, outputDir, iteration, session);
-			threadPool.execute(worker);
+			if (((completed % reportEvery) == 0) || (completed == numTasks)) {
+				LOGGER.info("Combined {} of {} sessions ({}%).", completed, numTasks, (100 * (long) completed) / numTasks);
+			}
 		}
 	}
 
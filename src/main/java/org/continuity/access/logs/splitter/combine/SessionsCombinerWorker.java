@@ -1,25 +1,28 @@
 package org.continuity.access.logs.splitter.combine;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.combine.SessionPool.Session;
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.format.SessionWriter;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
 
 public class SessionsCombinerWorker implements Runnable {
 
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
+
 	private static final long MIN_SESSION_LENGTH = 30 * 60 * 1000;
 
 	private static final long WAIT_TIME_BETWEEN_SESSIONS = 5 * 60 * 1000;
 
-	private final Path pathToSessions;
+	private final SessionPool sessions;
 
 	private final Path outputDir;
 
@@ -27,53 +30,61 @@ public class SessionsCombinerWorker implements Runnable {
 
 	private final int sessionIndex;
 
+	private final SessionFormat outputFormat;
+
 	private final Random rand;
 
 	private final List<AccessLogEntry> collectedSession = new ArrayList<>();
 
-	public SessionsCombinerWorker(Path pathToSessions, Path outputDir, int iterationIndex, int sessionIndex) {
-		this.pathToSessions = pathToSessions;
+	private long collectedDelay = 0;
+
+	public SessionsCombinerWorker(SessionPool sessions, Path outputDir, int iterationIndex, int sessionIndex, SessionFormat outputFormat) {
+		this.sessions = sessions;
 		this.outputDir = outputDir;
 		this.iterationIndex = iterationIndex;
 		this.sessionIndex = sessionIndex;
+		this.outputFormat = outputFormat;
 		this.rand = new Random((iterationIndex * 100) + sessionIndex);
 	}
 
+	public SessionsCombinerWorker(SessionPool sessions, Path outputDir, int iterationIndex, int sessionIndex) {
+		this(sessions, outputDir, iterationIndex, sessionIndex, SessionFormat.CSV);
+	}
+
 	@Override
 	public void run() {
-		List<String> sessions = Arrays.asList(pathToSessions.toFile().list());
-		Collections.sort(sessions);
-
 		while (isShorterThanMinLength()) {
-			String session = sessions.get(rand.nextInt(sessions.size()));
+			Session session = sessions.get(rand.nextInt(sessions.size()));
 			addSession(session);
+			METRICS.increment(Counter.SESSIONS_SAMPLED);
 		}
 
 		writeCollectedSession();
 	}
 
 	private boolean isShorterThanMinLength() {
-		return collectedSession.stream().mapToLong(AccessLogEntry::getDelay).sum() < MIN_SESSION_LENGTH;
+		return collectedDelay < MIN_SESSION_LENGTH;
 	}
 
-	private void addSession(String session) {
-		try {
-			Files.readAllLines(pathToSessions.resolve(session)).stream().skip(1).map(AccessLogEntry::fromCsvLine).forEach(collectedSession::add);
-			collectedSession.get(collectedSession.size() - 1).setDelay(WAIT_TIME_BETWEEN_SESSIONS);
-		} catch (IOException e) {
-			System.err.println(iterationIndex + " -> " + sessionIndex + ": " + session);
-			e.printStackTrace();
+	private void addSession(Session session) {
+		for (int i = 0; i < (session.size() - 1); i++) {
+			collectedSession.add(session.get(i));
 		}
+
+		// the pooled entries are shared, so we must not modify the delay of the last one
+		collectedSession.add(session.getLast().withDelay(WAIT_TIME_BETWEEN_SESSIONS));
+		collectedDelay += (session.getTotalDelay() - session.getLast().getDelay()) + WAIT_TIME_BETWEEN_SESSIONS;
 	}
 
 	private void writeCollectedSession() {
-		List<String> lines = collectedSession.stream().map(AccessLogEntry::toString).collect(Collectors.toList());
-		lines.add(0, AccessLogEntry.HEADER);
+		Path file = outputDir.resolve("iteration-" + iterationIndex).resolve("session-" + sessionIndex + outputFormat.getExtension());
 
-		try {
-			Files.write(outputDir.resolve("iteration-" + iterationIndex).resolve("session-" + sessionIndex + ".csv"), lines, StandardOpenOption.CREATE);
+		try (SessionWriter writer = outputFormat.openWriter(file, false)) {
+			for (AccessLogEntry entry : collectedSession) {
+				writer.write(entry);
+			}
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new UncheckedIOException("Cannot write " + file + "!", e);
 		}
 	}
 
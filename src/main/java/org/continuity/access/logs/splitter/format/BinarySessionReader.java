@@ -0,0 +1,148 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+
+/**
+ * Reads sessions written by the {@link BinarySessionWriter} from a buffer, which can be a
+ * memory-mapped file. Entries read from the same session share the strings of the dictionary.
+ */
+public class BinarySessionReader {
+
+	private final ByteBuffer buffer;
+
+	private final List<String> dictionary = new ArrayList<>();
+
+	/**
+	 * Creates a reader for a session starting at the current position of the buffer and ending at
+	 * its limit.
+	 *
+	 * @param buffer
+	 *            The buffer holding the session.
+	 * @throws IOException
+	 *             If the buffer does not start with a binary session.
+	 */
+	public BinarySessionReader(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+
+		for (byte b : BinarySessionWriter.MAGIC) {
+			if (!buffer.hasRemaining() || (buffer.get() != b)) {
+				throw new IOException("Not a binary session of version " + BinarySessionWriter.MAGIC[BinarySessionWriter.MAGIC.length - 1] + "!");
+			}
+		}
+	}
+
+	/**
+	 * Reads the next entry.
+	 *
+	 * @return The entry or {@code null} if there are no more entries.
+	 * @throws IOException
+	 *             If the session is truncated or corrupt.
+	 */
+	public AccessLogEntry next() throws IOException {
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+
+		try {
+			long zigZag = readVarint();
+			long delay = (zigZag >>> 1) ^ -(zigZag & 1);
+			String method = readReference();
+			String path = readReference();
+			String contentType = readReference();
+			String body = readString();
+
+			AccessLogEntry entry = new AccessLogEntry(null, null, method, path);
+			entry.setDelay(delay);
+			entry.setContentType(contentType);
+			entry.setBody(body);
+
+			return entry;
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt binary session at position " + buffer.position() + "!", e);
+		}
+	}
+
+	/**
+	 * Reads all remaining entries.
+	 *
+	 * @return The entries.
+	 * @throws IOException
+	 *             If the session is truncated or corrupt.
+	 */
+	public List<AccessLogEntry> readAll() throws IOException {
+		List<AccessLogEntry> entries = new ArrayList<>();
+		AccessLogEntry entry = next();
+
+		while (entry != null) {
+			entries.add(entry);
+			entry = next();
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Gets the dictionary of the entries read so far, which allows for continuing the session with
+	 * a {@link BinarySessionWriter}.
+	 *
+	 * @return The strings ordered by index.
+	 */
+	public List<String> getDictionary() {
+		return Collections.unmodifiableList(dictionary);
+	}
+
+	private String readReference() {
+		int reference = (int) readVarint();
+
+		if (reference == 0) {
+			String value = readString();
+			dictionary.add(value);
+			return value;
+		} else {
+			return dictionary.get(reference - 1);
+		}
+	}
+
+	private String readString() {
+		int length = (int) readVarint();
+		String value;
+
+		if ((length < 0) || (length > buffer.remaining())) {
+			throw new BufferUnderflowException();
+		}
+
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		return value;
+	}
+
+	private long readVarint() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+
+		return value;
+	}
+
+}
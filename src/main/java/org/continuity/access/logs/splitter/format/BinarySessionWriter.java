@@ -0,0 +1,113 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+
+/**
+ * Writes sessions in the binary format read by {@link BinarySessionReader}. The file starts with
+ * {@link #MAGIC}, followed by the entries, each consisting of
+ * <ol>
+ * <li>the delay as zig-zag encoded varint,</li>
+ * <li>the method, path, and content type as dictionary references,</li>
+ * <li>and the body as varint length followed by the UTF-8 bytes.</li>
+ * </ol>
+ * A dictionary reference is a varint holding the index of the string plus one. The dictionary is
+ * built while writing: a reference of 0 is followed by a new string (length and UTF-8 bytes),
+ * which gets the next index. Hence, a session can be written entry by entry and the repeating
+ * strings are stored only once.
+ */
+public class BinarySessionWriter implements SessionWriter {
+
+	/** "ALSB" followed by the format version. */
+	static final byte[] MAGIC = { 'A', 'L', 'S', 'B', 1 };
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final OutputStream out;
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+
+	/**
+	 * Creates a writer for a new file.
+	 *
+	 * @param out
+	 *            The stream to write to.
+	 * @throws IOException
+	 *             If the header cannot be written.
+	 */
+	public BinarySessionWriter(OutputStream out) throws IOException {
+		this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+		this.out.write(MAGIC);
+	}
+
+	/**
+	 * Creates a writer continuing an existing file.
+	 *
+	 * @param out
+	 *            The stream appending to the file.
+	 * @param dictionary
+	 *            The dictionary of the file as returned by {@link BinarySessionReader#getDictionary()}.
+	 */
+	public BinarySessionWriter(OutputStream out, List<String> dictionary) {
+		this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+
+		for (String value : dictionary) {
+			this.dictionary.put(value, this.dictionary.size());
+		}
+	}
+
+	@Override
+	public void write(AccessLogEntry entry) throws IOException {
+		long delay = entry.getDelay();
+		writeVarint((delay << 1) ^ (delay >> 63));
+		writeReference(entry.getRequestMethod());
+		writeReference(entry.getPath());
+		writeReference(entry.getContentType());
+		writeString(entry.getBody());
+	}
+
+	private void writeReference(String value) throws IOException {
+		Integer index = dictionary.get(value);
+
+		if (index == null) {
+			dictionary.put(value, dictionary.size());
+			writeVarint(0);
+			writeString(value);
+		} else {
+			writeVarint(index + 1);
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+		out.write(bytes);
+	}
+
+	private void writeVarint(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		out.write((int) value);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
@@ -0,0 +1,316 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads sessions written by the {@link CsvSessionWriter} in a single pass over the characters,
+ * without creating a string per line. All five columns are quoted. Quotes inside a column are
+ * escaped as {@code ""}, which is kept as it is, i.e., the body holds the same escaped string the
+ * annotator has created. <br>
+ * A quote that is neither escaped nor followed by a delimiter is taken as part of the column. The
+ * body, as the last column, only ends with a quote at the end of the line. Hence, bodies holding
+ * unescaped JSON are read correctly, too. Malformed lines are logged and skipped.
+ */
+public class CsvSessionReader implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CsvSessionReader.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final char QUOTE = '"';
+
+	private static final char DELIMITER = ',';
+
+	private static final int MAX_DIGITS = 18;
+
+	private final Reader reader;
+
+	private final char[] buffer;
+
+	private int position = 0;
+
+	private int limit = 0;
+
+	private final StringBuilder column = new StringBuilder();
+
+	private boolean skipHeader;
+
+	private long lineNumber = 0;
+
+	/**
+	 * Creates a reader.
+	 *
+	 * @param reader
+	 *            The reader to read from. It does not need to be buffered.
+	 * @param skipHeader
+	 *            Whether the first line is a header, which is to be skipped.
+	 */
+	public CsvSessionReader(Reader reader, boolean skipHeader) {
+		this.reader = reader;
+		this.buffer = new char[BUFFER_SIZE];
+		this.skipHeader = skipHeader;
+	}
+
+	/**
+	 * Creates a reader of the passed characters only, which are used as buffer.
+	 */
+	private CsvSessionReader(char[] chars) {
+		this.reader = null;
+		this.buffer = chars;
+		this.limit = chars.length;
+		this.skipHeader = false;
+	}
+
+	/**
+	 * Parses a single line without header. Only a buffer of the size of the line is allocated.
+	 *
+	 * @param line
+	 *            The line.
+	 * @return The entry or {@code null} if the line cannot be parsed.
+	 */
+	public static AccessLogEntry parseLine(String line) {
+		try {
+			return new CsvSessionReader(line.toCharArray()).next();
+		} catch (IOException e) {
+			// cannot happen without an underlying reader
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the next entry.
+	 *
+	 * @return The entry or {@code null} if there are no more entries.
+	 * @throws IOException
+	 *             If the underlying reader fails.
+	 */
+	public AccessLogEntry next() throws IOException {
+		if (skipHeader) {
+			skipHeader = false;
+			skipLine();
+			lineNumber++;
+		}
+
+		while (peek() >= 0) {
+			lineNumber++;
+			AccessLogEntry entry = readLine();
+
+			if (entry == null) {
+				LOGGER.error("Cannot parse CSV line {}!", lineNumber);
+			}
+
+			skipLine();
+
+			if (entry != null) {
+				return entry;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reads all remaining entries.
+	 *
+	 * @return The entries.
+	 * @throws IOException
+	 *             If the underlying reader fails.
+	 */
+	public List<AccessLogEntry> readAll() throws IOException {
+		List<AccessLogEntry> entries = new ArrayList<>();
+		AccessLogEntry entry;
+
+		while ((entry = next()) != null) {
+			entries.add(entry);
+		}
+
+		return entries;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the columns of a line. The line terminator is not consumed.
+	 *
+	 * @return The entry or {@code null} if the line is malformed.
+	 */
+	private AccessLogEntry readLine() throws IOException {
+		if (!readColumn(false)) {
+			return null;
+		}
+
+		long delay;
+
+		try {
+			delay = parseDelay();
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		if (!readColumn(false)) {
+			return null;
+		}
+
+		String method = column.toString();
+
+		if (!readColumn(false)) {
+			return null;
+		}
+
+		String path = column.toString();
+
+		if (!readColumn(false)) {
+			return null;
+		}
+
+		String contentType = column.toString();
+
+		if (!readColumn(true)) {
+			return null;
+		}
+
+		AccessLogEntry entry = new AccessLogEntry(null, null, method, path);
+		entry.setDelay(delay);
+		entry.setContentType(contentType);
+		entry.setBody(column.length() == 0 ? AccessLogEntry.EMPTY_BODY : column.toString());
+
+		return entry;
+	}
+
+	/**
+	 * Reads a quoted column into {@link #column} and consumes the delimiter after it. Line
+	 * terminators are never consumed.
+	 *
+	 * @param last
+	 *            Whether it is the last column of the line.
+	 * @return {@code false} if the line does not hold a complete column at the current position.
+	 */
+	private boolean readColumn(boolean last) throws IOException {
+		column.setLength(0);
+
+		if (peek() != QUOTE) {
+			return false;
+		}
+
+		position++;
+
+		while (true) {
+			if ((position == limit) && !fill()) {
+				return false;
+			}
+
+			int start = position;
+
+			while ((position < limit) && !isSpecial(buffer[position])) {
+				position++;
+			}
+
+			column.append(buffer, start, position - start);
+
+			if (position == limit) {
+				continue;
+			}
+
+			if (buffer[position] != QUOTE) {
+				// line terminators are not allowed inside columns
+				return false;
+			}
+
+			position++;
+			int next = peek();
+
+			if (next == QUOTE) {
+				column.append(QUOTE).append(QUOTE);
+				position++;
+			} else if (last && ((next < 0) || (next == '\n') || (next == '\r'))) {
+				return true;
+			} else if (!last && (next == DELIMITER)) {
+				position++;
+				return true;
+			} else {
+				column.append(QUOTE);
+			}
+		}
+	}
+
+	private boolean isSpecial(char c) {
+		return (c == QUOTE) || (c == '\n') || (c == '\r');
+	}
+
+	private long parseDelay() {
+		int length = column.length();
+		int i = ((length > 0) && (column.charAt(0) == '-')) ? 1 : 0;
+
+		if ((length - i) > MAX_DIGITS) {
+			// longer values might overflow in the loop below
+			return Long.parseLong(column.toString());
+		} else if (i == length) {
+			throw new NumberFormatException();
+		}
+
+		long value = 0;
+
+		for (; i < length; i++) {
+			int digit = column.charAt(i) - '0';
+
+			if ((digit < 0) || (digit > 9)) {
+				throw new NumberFormatException();
+			}
+
+			value = (10 * value) + digit;
+		}
+
+		return column.charAt(0) == '-' ? -value : value;
+	}
+
+	private void skipLine() throws IOException {
+		int c;
+
+		while ((c = peek()) >= 0) {
+			position++;
+
+			if (c == '\n') {
+				return;
+			} else if (c == '\r') {
+				if (peek() == '\n') {
+					position++;
+				}
+
+				return;
+			}
+		}
+	}
+
+	private int peek() throws IOException {
+		if ((position == limit) && !fill()) {
+			return -1;
+		}
+
+		return buffer[position];
+	}
+
+	private boolean fill() throws IOException {
+		if (reader == null) {
+			return false;
+		}
+
+		int read = reader.read(buffer, 0, buffer.length);
+		position = 0;
+		limit = Math.max(read, 0);
+		return read > 0;
+	}
+
+}
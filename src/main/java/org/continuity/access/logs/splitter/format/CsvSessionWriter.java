@@ -0,0 +1,93 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+
+/**
+ * Writes sessions as CSV with one line per entry as returned by {@link AccessLogEntry#toString()}.
+ * The columns are written to the buffer directly without building the line first. They are
+ * expected to be escaped already, as done by the annotator. The lines can be read with the
+ * {@link CsvSessionReader}.
+ */
+public class CsvSessionWriter implements SessionWriter {
+
+	private static final char QUOTE = '"';
+
+	private static final String SEPARATOR = "\",\"";
+
+	private final BufferedWriter writer;
+
+	private final char[] digits = new char[20];
+
+	/**
+	 * Creates a writer.
+	 *
+	 * @param out
+	 *            The stream to write to.
+	 * @param writeHeader
+	 *            Whether to start with the header, i.e., whether it is a new file.
+	 * @throws IOException
+	 *             If the header cannot be written.
+	 */
+	public CsvSessionWriter(OutputStream out, boolean writeHeader) throws IOException {
+		this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+		if (writeHeader) {
+			writer.write(AccessLogEntry.HEADER);
+			writer.newLine();
+		}
+	}
+
+	@Override
+	public void write(AccessLogEntry entry) throws IOException {
+		writer.write(QUOTE);
+		writeDelay(entry.getDelay());
+		writeColumn(entry.getRequestMethod());
+		writeColumn(entry.getPath());
+		writeColumn(entry.getContentType());
+		writeColumn(entry.getBody());
+		writer.write(QUOTE);
+		writer.newLine();
+	}
+
+	private void writeColumn(String value) throws IOException {
+		writer.write(SEPARATOR);
+		writer.write(String.valueOf(value));
+	}
+
+	/**
+	 * Writes the digits without creating a string. Works on the negated value, which also covers
+	 * {@link Long#MIN_VALUE}.
+	 */
+	private void writeDelay(long delay) throws IOException {
+		long rest = delay > 0 ? -delay : delay;
+		int start = digits.length;
+
+		do {
+			digits[--start] = (char) ('0' - (rest % 10));
+			rest /= 10;
+		} while (rest != 0);
+
+		if (delay < 0) {
+			digits[--start] = '-';
+		}
+
+		writer.write(digits, start, digits.length - start);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+}
@@ -0,0 +1,220 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads sessions written by the {@link SessionArchiveWriter}. The segments are memory-mapped, so
+ * that a session is read from a slice of the mapping without opening a file. The sessions are
+ * ordered by name. Sessions that are listed in the index, but have not been written completely,
+ * e.g., because the split has been killed, are skipped.
+ */
+public class SessionArchive implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SessionArchive.class);
+
+	private final SessionFormat format;
+
+	private final boolean compressed;
+
+	private final List<Record> records;
+
+	private final MappedByteBuffer[] segments;
+
+	private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(() -> new Inflater(true));
+
+	private SessionArchive(SessionFormat format, boolean compressed, List<Record> records, MappedByteBuffer[] segments) {
+		this.format = format;
+		this.compressed = compressed;
+		this.records = records;
+		this.segments = segments;
+	}
+
+	/**
+	 * Checks whether a directory holds an archive rather than one file per session.
+	 *
+	 * @param directory
+	 *            The directory.
+	 * @return {@code true} if there is an index.
+	 */
+	public static boolean isArchive(Path directory) {
+		return Files.isRegularFile(directory.resolve(SessionArchiveWriter.INDEX_FILENAME));
+	}
+
+	/**
+	 * Reads the index and maps the segments.
+	 *
+	 * @param directory
+	 *            The directory holding the archive.
+	 * @return The archive.
+	 * @throws IOException
+	 *             If the index is corrupt or a segment cannot be mapped.
+	 */
+	public static SessionArchive open(Path directory) throws IOException {
+		SessionFormat format;
+		boolean compressed;
+		List<Record> records = new ArrayList<>();
+		int numSegments = 0;
+
+		try (DataInputStream index = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(SessionArchiveWriter.INDEX_FILENAME))))) {
+			for (byte b : SessionArchiveWriter.MAGIC) {
+				if (index.readByte() != b) {
+					throw new IOException(directory + " does not hold a session archive!");
+				}
+			}
+
+			if (index.readByte() != SessionArchiveWriter.VERSION) {
+				throw new IOException("Unsupported version of the session archive " + directory + "!");
+			}
+
+			format = SessionFormat.valueOf(index.readUTF());
+			compressed = index.readBoolean();
+
+			while (true) {
+				Record record = new Record();
+
+				try {
+					record.name = index.readUTF();
+					record.segment = index.readInt();
+					record.offset = index.readLong();
+					record.length = index.readInt();
+					record.rawLength = index.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+
+				records.add(record);
+				numSegments = Math.max(numSegments, record.segment + 1);
+			}
+		}
+
+		MappedByteBuffer[] segments = new MappedByteBuffer[numSegments];
+
+		for (int i = 0; i < numSegments; i++) {
+			Path file = SessionArchiveWriter.segmentFile(directory, i);
+
+			if (Files.exists(file)) {
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+					segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				}
+			}
+		}
+
+		int numRecords = records.size();
+		records.removeIf(r -> (segments[r.segment] == null) || ((r.offset + r.length) > segments[r.segment].capacity()));
+
+		if (records.size() < numRecords) {
+			LOGGER.warn("Skipping {} incomplete sessions of {}.", numRecords - records.size(), directory);
+		}
+
+		records.sort(Comparator.comparing(r -> r.name));
+
+		return new SessionArchive(format, compressed, records, segments);
+	}
+
+	public int size() {
+		return records.size();
+	}
+
+	public String getName(int index) {
+		return records.get(index).name;
+	}
+
+	/**
+	 * Reads the entries of a session. Can be called from several threads.
+	 *
+	 * @param index
+	 *            The index of the session in the order of the names.
+	 * @return The entries.
+	 * @throws IOException
+	 *             If the session is corrupt.
+	 */
+	public List<AccessLogEntry> read(int index) throws IOException {
+		Record record = records.get(index);
+		ByteBuffer slice = segments[record.segment].duplicate();
+		slice.position((int) record.offset);
+		slice.limit((int) record.offset + record.length);
+
+		if (compressed) {
+			slice = ByteBuffer.wrap(inflate(slice, record.rawLength));
+		}
+
+		return format.read(slice);
+	}
+
+	private byte[] inflate(ByteBuffer deflated, int rawLength) throws IOException {
+		byte[] input = new byte[deflated.remaining()];
+		deflated.get(input);
+
+		Inflater current = inflater.get();
+		current.reset();
+		current.setInput(input);
+
+		byte[] raw = new byte[rawLength];
+
+		try {
+			int inflated = 0;
+
+			while ((inflated < rawLength) && !current.finished()) {
+				int n = current.inflate(raw, inflated, rawLength - inflated);
+
+				if ((n == 0) && current.needsInput()) {
+					break;
+				}
+
+				inflated += n;
+			}
+
+			if (inflated != rawLength) {
+				throw new IOException("Session is truncated!");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Session is corrupt!", e);
+		}
+
+		return raw;
+	}
+
+	/**
+	 * The mapped segments are released by the garbage collector.
+	 */
+	@Override
+	public void close() {
+		records.clear();
+		Arrays.fill(segments, null);
+	}
+
+	private static class Record {
+
+		private String name;
+
+		private int segment;
+
+		private long offset;
+
+		private int length;
+
+		private int rawLength;
+
+	}
+
+}
@@ -0,0 +1,200 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import org.continuity.access.logs.splitter.metrics.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends complete sessions to a few large segment files instead of writing one file per
+ * session. Each session is stored as a contiguous block in a {@link SessionFormat}, which is
+ * optionally deflated on its own, so that single sessions can still be read without decompressing
+ * the whole segment. The blocks are listed in an index file holding the name, the segment, the
+ * offset, and the length of each session. <br>
+ * Sessions can be appended from several threads. The archive can be read with the
+ * {@link SessionArchive}. The index is written after the segments, so that an archive that has
+ * not been closed, e.g., because the process has been killed, can be read up to the last flush.
+ */
+public class SessionArchiveWriter implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SessionArchiveWriter.class);
+
+	public static final String INDEX_FILENAME = "sessions.idx";
+
+	static final byte[] MAGIC = "ALSI".getBytes(StandardCharsets.US_ASCII);
+
+	static final int VERSION = 1;
+
+	/** Segments are memory-mapped as a whole when reading and thus need to stay below 2 GB. */
+	public static final long DEFAULT_MAX_SEGMENT_SIZE = 1024 * 1024 * 1024;
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private static final int DEFLATE_CHUNK_SIZE = 8 * 1024;
+
+	private final Path directory;
+
+	private final boolean compressed;
+
+	private final ThreadLocal<Deflater> deflater = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+	private final DataOutputStream index;
+
+	private long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+
+	private OutputStream segment;
+
+	private int segmentNumber = -1;
+
+	private long segmentSize;
+
+	private boolean autoFlush = false;
+
+	/**
+	 * Creates an archive in a directory. An existing archive is overwritten.
+	 *
+	 * @param directory
+	 *            The directory to hold the index and the segments.
+	 * @param format
+	 *            The format of the sessions.
+	 * @param compressed
+	 *            Whether to deflate the sessions.
+	 * @throws IOException
+	 *             If the index cannot be created.
+	 */
+	public SessionArchiveWriter(Path directory, SessionFormat format, boolean compressed) throws IOException {
+		this.directory = directory;
+		this.compressed = compressed;
+		this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(INDEX_FILENAME)), BUFFER_SIZE));
+
+		index.write(MAGIC);
+		index.writeByte(VERSION);
+		index.writeUTF(format.name());
+		index.writeBoolean(compressed);
+	}
+
+	static Path segmentFile(Path directory, int segmentNumber) {
+		return directory.resolve("segment-" + segmentNumber + ".seg");
+	}
+
+	/**
+	 * Sets the size after which a new segment is started. Defaults to
+	 * {@link #DEFAULT_MAX_SEGMENT_SIZE}.
+	 *
+	 * @param maxSegmentSize
+	 *            The size in bytes. Must not exceed {@link Integer#MAX_VALUE}.
+	 */
+	public void setMaxSegmentSize(long maxSegmentSize) {
+		if ((maxSegmentSize <= 0) || (maxSegmentSize > Integer.MAX_VALUE)) {
+			throw new IllegalArgumentException("The maximum segment size needs to be between 1 and " + Integer.MAX_VALUE + " bytes, but was " + maxSegmentSize + "!");
+		}
+
+		this.maxSegmentSize = maxSegmentSize;
+	}
+
+	/**
+	 * Sets whether the segment and the index are flushed after each session, so that all sessions
+	 * appended so far can be read even if the archive is never closed. Meant for long-running
+	 * splits, which finish sessions at a low rate. Defaults to {@code false}.
+	 *
+	 * @param autoFlush
+	 *            Whether to flush after each session.
+	 */
+	public void setAutoFlush(boolean autoFlush) {
+		this.autoFlush = autoFlush;
+	}
+
+	/**
+	 * Appends a complete session. Compression is done in the calling thread.
+	 *
+	 * @param name
+	 *            The name of the session, which determines the order when reading.
+	 * @param session
+	 *            The session as written by a {@link SessionWriter}.
+	 * @param length
+	 *            The number of bytes of {@code session} to be appended.
+	 * @throws IOException
+	 *             If the session cannot be written.
+	 */
+	public void append(String name, byte[] session, int length) throws IOException {
+		byte[] data = session;
+		int dataLength = length;
+
+		if (compressed) {
+			data = deflate(session, length);
+			dataLength = data.length;
+		}
+
+		synchronized (this) {
+			if ((segment == null) || ((segmentSize > 0) && ((segmentSize + dataLength) > maxSegmentSize))) {
+				nextSegment();
+			}
+
+			segment.write(data, 0, dataLength);
+
+			index.writeUTF(name);
+			index.writeInt(segmentNumber);
+			index.writeLong(segmentSize);
+			index.writeInt(dataLength);
+			index.writeInt(length);
+
+			segmentSize += dataLength;
+
+			if (autoFlush) {
+				// the segment first, as the index must not refer to missing data
+				segment.flush();
+				index.flush();
+			}
+		}
+	}
+
+	private void nextSegment() throws IOException {
+		if (segment != null) {
+			segment.close();
+		}
+
+		segmentNumber++;
+		segmentSize = 0;
+
+		Path file = segmentFile(directory, segmentNumber);
+		LOGGER.debug("Starting segment {}.", file);
+		segment = new BufferedOutputStream(new CountingOutputStream(Files.newOutputStream(file)), BUFFER_SIZE);
+	}
+
+	private byte[] deflate(byte[] session, int length) {
+		Deflater current = deflater.get();
+		current.reset();
+		current.setInput(session, 0, length);
+		current.finish();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream((length / 2) + 64);
+		byte[] chunk = new byte[DEFLATE_CHUNK_SIZE];
+
+		while (!current.finished()) {
+			int deflated = current.deflate(chunk);
+			out.write(chunk, 0, deflated);
+		}
+
+		return out.toByteArray();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (segment != null) {
+			segment.close();
+		}
+
+		index.close();
+	}
+
+}
@@ -0,0 +1,181 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.metrics.CountingOutputStream;
+
+/**
+ * The formats session files can be written in. The format of a file is determined by its
+ * extension.
+ */
+public enum SessionFormat {
+
+	/**
+	 * Human-readable CSV with a header line.
+	 */
+	CSV(".csv") {
+
+		@Override
+		protected SessionWriter createWriter(Path file, OutputStream out, boolean append) throws IOException {
+			return new CsvSessionWriter(out, !append);
+		}
+
+		@Override
+		public List<AccessLogEntry> read(Path file) throws IOException {
+			try (CsvSessionReader reader = new CsvSessionReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), true)) {
+				return reader.readAll();
+			}
+		}
+
+		@Override
+		public List<AccessLogEntry> read(ByteBuffer buffer) throws IOException {
+			CharBuffer chars = StandardCharsets.UTF_8.decode(buffer);
+
+			try (CsvSessionReader reader = new CsvSessionReader(new CharArrayReader(chars.array(), chars.arrayOffset(), chars.remaining()), true)) {
+				return reader.readAll();
+			}
+		}
+
+	},
+
+	/**
+	 * Compact format written by the {@link BinarySessionWriter}.
+	 */
+	BINARY(".bin") {
+
+		@Override
+		protected SessionWriter createWriter(Path file, OutputStream out, boolean append) throws IOException {
+			if (append) {
+				BinarySessionReader reader = new BinarySessionReader(ByteBuffer.wrap(Files.readAllBytes(file)));
+				reader.readAll();
+				return new BinarySessionWriter(out, reader.getDictionary());
+			} else {
+				return new BinarySessionWriter(out);
+			}
+		}
+
+		@Override
+		public List<AccessLogEntry> read(ByteBuffer buffer) throws IOException {
+			return new BinarySessionReader(buffer).readAll();
+		}
+
+	};
+
+	private final String extension;
+
+	private SessionFormat(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * Determines the format of a file by its extension. Files without a known extension are
+	 * considered CSV.
+	 *
+	 * @param file
+	 *            The file.
+	 * @return The format.
+	 */
+	public static SessionFormat forFile(Path file) {
+		return file.getFileName().toString().endsWith(BINARY.extension) ? BINARY : CSV;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Opens a writer. The written bytes are counted in the metrics.
+	 *
+	 * @param file
+	 *            The file to write to.
+	 * @param append
+	 *            If {@code true}, an existing session is continued. Otherwise, the file is
+	 *            overwritten.
+	 * @return The writer.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 */
+	public SessionWriter openWriter(Path file, boolean append) throws IOException {
+		OutputStream out;
+
+		if (append) {
+			out = Files.newOutputStream(file, StandardOpenOption.APPEND);
+		} else {
+			out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		return createWriter(file, new CountingOutputStream(out), append);
+	}
+
+	/**
+	 * Opens a writer, which writes through a {@link SessionOutputPool}. The written bytes are
+	 * counted by the pool.
+	 *
+	 * @param pool
+	 *            The pool.
+	 * @param file
+	 *            The file to write to.
+	 * @param append
+	 *            If {@code true}, an existing session is continued. Otherwise, the file is
+	 *            overwritten. An existing session must not have pending chunks in the pool.
+	 * @return The writer.
+	 * @throws IOException
+	 *             If the beginning of the session cannot be written.
+	 */
+	public SessionWriter openWriter(SessionOutputPool pool, Path file, boolean append) throws IOException {
+		return createWriter(file, pool.open(file, append), append);
+	}
+
+	/**
+	 * Creates a writer for a new session on an arbitrary stream, e.g., to buffer a session in
+	 * memory.
+	 *
+	 * @param out
+	 *            The stream to write to.
+	 * @return The writer.
+	 * @throws IOException
+	 *             If the beginning of the session cannot be written.
+	 */
+	public SessionWriter newWriter(OutputStream out) throws IOException {
+		return createWriter(null, out, false);
+	}
+
+	protected abstract SessionWriter createWriter(Path file, OutputStream out, boolean append) throws IOException;
+
+	/**
+	 * Reads all entries of a session file.
+	 *
+	 * @param file
+	 *            The file.
+	 * @return The entries.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public List<AccessLogEntry> read(Path file) throws IOException {
+		return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+	}
+
+	/**
+	 * Reads all entries of a session held in a buffer, e.g., a slice of a memory-mapped
+	 * {@link SessionArchive} segment.
+	 *
+	 * @param buffer
+	 *            The buffer holding the session from its position to its limit.
+	 * @return The entries.
+	 * @throws IOException
+	 *             If the session is corrupt.
+	 */
+	public abstract List<AccessLogEntry> read(ByteBuffer buffer) throws IOException;
+
+}
@@ -0,0 +1,383 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the session files of all collectors from one dedicated I/O thread. The streams returned
+ * by {@link #open(Path, boolean)} collect the written bytes in memory and hand them over in
+ * chunks of up to {@link #CHUNK_SIZE} bytes. Hence, a typical session is written with a single
+ * write once it is closed, and the calling threads never wait for the disk, but only if too many
+ * chunks are pending. <br>
+ * The I/O thread holds at most a fixed number of files open. If another file needs to be opened,
+ * the least recently written one is closed and reopened for appending later on.
+ */
+public class SessionOutputPool implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SessionOutputPool.class);
+
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
+
+	public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+	public static final int CHUNK_SIZE = 32 * 1024;
+
+	/** Bounds the memory held by pending chunks to 32 MB. */
+	private static final int MAX_PENDING_CHUNKS = 1024;
+
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	private static final Request STOP = new Request(null, null, 0, false, null);
+
+	private final BlockingQueue<Request> requests = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+
+	private final int maxOpenFiles;
+
+	/** Only accessed by the I/O thread. Iterates the least recently written file first. */
+	private final Map<PooledFile, OutputStream> openFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final Thread ioThread;
+
+	private volatile int numOpenFiles = 0;
+
+	private volatile IOException failure;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a pool and starts the I/O thread.
+	 *
+	 * @param maxOpenFiles
+	 *            The maximum number of files to be held open.
+	 */
+	public SessionOutputPool(int maxOpenFiles) {
+		if (maxOpenFiles < 1) {
+			throw new IllegalArgumentException("The maximum number of open files needs to be positive, but was " + maxOpenFiles + "!");
+		}
+
+		this.maxOpenFiles = maxOpenFiles;
+		this.ioThread = new Thread(this::writeRequests, "session-output");
+		this.ioThread.setDaemon(true);
+		this.ioThread.start();
+	}
+
+	public SessionOutputPool() {
+		this(DEFAULT_MAX_OPEN_FILES);
+	}
+
+	/**
+	 * Opens a stream to a file. The file is only opened once the first chunk is written. The
+	 * stream may only be used by one thread at a time.
+	 *
+	 * @param file
+	 *            The file to write to.
+	 * @param append
+	 *            If {@code true}, the file is appended to. Otherwise, it is overwritten.
+	 * @return The stream.
+	 */
+	public OutputStream open(Path file, boolean append) {
+		return new PooledOutputStream(new PooledFile(file, append));
+	}
+
+	public int getNumOpenFiles() {
+		return numOpenFiles;
+	}
+
+	/**
+	 * Waits until all chunks handed over before have been written, e.g., to determine the size of
+	 * a file afterwards. Streams need to be flushed first.
+	 *
+	 * @throws IOException
+	 *             If the pool has been closed or the calling thread is interrupted.
+	 */
+	public void sync() throws IOException {
+		CountDownLatch barrier = new CountDownLatch(1);
+		submit(new Request(null, null, 0, false, barrier));
+
+		try {
+			barrier.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the session files to be written!");
+		}
+	}
+
+	/**
+	 * Writes all pending chunks and closes the files. Chunks handed over afterwards are rejected.
+	 *
+	 * @throws IOException
+	 *             If writing any chunk has failed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			submit(STOP);
+			closed = true;
+
+			try {
+				ioThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the session files to be written!");
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void submit(Request request) throws IOException {
+		if (closed) {
+			throw new IOException("The session output pool has been closed!");
+		}
+
+		try {
+			requests.put(request);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while handing over a session chunk!");
+		}
+	}
+
+	private void writeRequests() {
+		List<Request> batch = new ArrayList<>();
+
+		while (true) {
+			try {
+				batch.add(requests.take());
+			} catch (InterruptedException e) {
+				LOGGER.error("Interrupted!", e);
+				continue;
+			}
+
+			requests.drainTo(batch);
+
+			for (Request request : batch) {
+				if (request == STOP) {
+					closeAll();
+					return;
+				} else if (request.barrier != null) {
+					request.barrier.countDown();
+				} else {
+					write(request);
+				}
+			}
+
+			batch.clear();
+		}
+	}
+
+	private void write(Request request) {
+		PooledFile file = request.file;
+		OutputStream out = openFiles.get(file);
+
+		try {
+			if (out == null) {
+				out = openFile(file);
+			}
+
+			if (request.length > 0) {
+				out.write(request.data, 0, request.length);
+				METRICS.add(Counter.BYTES_WRITTEN, request.length);
+			}
+
+			if (request.close) {
+				openFiles.remove(file);
+				out.close();
+			}
+		} catch (IOException e) {
+			LOGGER.error("Could not write to {}!", file.path, e);
+
+			if (failure == null) {
+				failure = e;
+			}
+
+			if (out != null) {
+				openFiles.remove(file);
+				closeQuietly(file, out);
+			}
+		}
+
+		numOpenFiles = openFiles.size();
+	}
+
+	private OutputStream openFile(PooledFile file) throws IOException {
+		if (openFiles.size() >= maxOpenFiles) {
+			Iterator<Map.Entry<PooledFile, OutputStream>> eldest = openFiles.entrySet().iterator();
+			Map.Entry<PooledFile, OutputStream> entry = eldest.next();
+			eldest.remove();
+			closeQuietly(entry.getKey(), entry.getValue());
+		}
+
+		OutputStream out;
+
+		if (file.opened || file.append) {
+			out = Files.newOutputStream(file.path, StandardOpenOption.APPEND);
+		} else {
+			out = Files.newOutputStream(file.path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		}
+
+		file.opened = true;
+		openFiles.put(file, out);
+		return out;
+	}
+
+	private void closeAll() {
+		for (Map.Entry<PooledFile, OutputStream> entry : openFiles.entrySet()) {
+			closeQuietly(entry.getKey(), entry.getValue());
+		}
+
+		openFiles.clear();
+		numOpenFiles = 0;
+	}
+
+	private void closeQuietly(PooledFile file, OutputStream out) {
+		try {
+			out.close();
+		} catch (IOException e) {
+			LOGGER.error("Could not close {}!", file.path, e);
+
+			if (failure == null) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * A file written via the pool. Its identity is used as key, as there is one per stream.
+	 */
+	private static class PooledFile {
+
+		private final Path path;
+
+		private final boolean append;
+
+		/** Whether the file has been opened before and needs to be appended to. */
+		private boolean opened = false;
+
+		private PooledFile(Path path, boolean append) {
+			this.path = path;
+			this.append = append;
+		}
+
+	}
+
+	private static class Request {
+
+		private final PooledFile file;
+
+		private final byte[] data;
+
+		private final int length;
+
+		private final boolean close;
+
+		private final CountDownLatch barrier;
+
+		private Request(PooledFile file, byte[] data, int length, boolean close, CountDownLatch barrier) {
+			this.file = file;
+			this.data = data;
+			this.length = length;
+			this.close = close;
+			this.barrier = barrier;
+		}
+
+	}
+
+	/**
+	 * Collects the bytes of one file and hands them over in chunks.
+	 */
+	private class PooledOutputStream extends OutputStream {
+
+		private final PooledFile file;
+
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+		private int count = 0;
+
+		private boolean streamClosed = false;
+
+		private PooledOutputStream(PooledFile file) {
+			this.file = file;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			ensureCapacity(1);
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				ensureCapacity(Math.min(len, CHUNK_SIZE));
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Hands the collected bytes over to the I/O thread without waiting for them to be
+		 * written.
+		 */
+		@Override
+		public void flush() throws IOException {
+			if (count > 0) {
+				handOver(false);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!streamClosed) {
+				streamClosed = true;
+				handOver(true);
+			}
+		}
+
+		private void ensureCapacity(int length) throws IOException {
+			if (streamClosed) {
+				throw new IOException("The stream to " + file.path + " has been closed!");
+			}
+
+			if ((count + length) > CHUNK_SIZE) {
+				handOver(false);
+			}
+
+			if ((count + length) > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.min(Math.max(2 * buffer.length, count + length), CHUNK_SIZE));
+			}
+		}
+
+		private void handOver(boolean close) throws IOException {
+			submit(new Request(file, buffer, count, close, null));
+			buffer = close ? null : new byte[INITIAL_BUFFER_SIZE];
+			count = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,24 @@
+package org.continuity.access.logs.splitter.format;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+
+/**
+ * Writes the entries of a session to a file of a {@link SessionFormat}.
+ */
+public interface SessionWriter extends Closeable, Flushable {
+
+	/**
+	 * Writes the delay, method, path, content type, and body of the entry.
+	 *
+	 * @param entry
+	 *            The entry.
+	 * @throws IOException
+	 *             If the entry cannot be written.
+	 */
+	void write(AccessLogEntry entry) throws IOException;
+
+}
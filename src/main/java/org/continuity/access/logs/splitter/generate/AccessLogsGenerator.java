@@ -0,0 +1,383 @@
+package org.continuity.access.logs.splitter.generate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.continuity.idpa.application.Application;
+import org.continuity.idpa.application.Endpoint;
+import org.continuity.idpa.application.HttpEndpoint;
+import org.continuity.idpa.application.HttpParameter;
+import org.continuity.idpa.application.HttpParameterType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates synthetic access logs in the combined log format. Each thread ID (client IP) issues
+ * requests with a configurable think time and occasionally pauses long enough to start a new
+ * session. The lines of all thread IDs are written in timestamp order. <br>
+ * The output only depends on the configuration, including the seed, and is streamed to disk.
+ */
+public class AccessLogsGenerator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AccessLogsGenerator.class);
+
+	private static final Pattern PATTERN_URL_PART_PARAM = Pattern.compile("\\{([^{]*)\\}");
+
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+	private static final long SESSION_GAP = 31 * 60 * 1000;
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private static final String[] USER_AGENTS = { "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/70.0.3538.77 Safari/537.36",
+			"Mozilla/5.0 (X11; Linux x86_64; rv:63.0) Gecko/20100101 Firefox/63.0", "Apache-HttpClient/4.5.6 (Java/1.8.0_181)" };
+
+	private static final String REQUEST_END = " HTTP/1.1\"";
+
+	private static final String ALPHANUMERICS = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+	private final Path outputFile;
+
+	private final long numLines;
+
+	private int numThreadIds = 1000;
+
+	private ToLongFunction<Random> thinkTime = exponential(5000);
+
+	private double sessionGapProbability = 0.01;
+
+	private double malformedProbability = 0;
+
+	private long seed = 42;
+
+	private Instant start = Instant.parse("2019-01-01T00:00:00Z");
+
+	private ZoneOffset offset = ZoneOffset.UTC;
+
+	private final List<WeightedEndpoint> endpoints = new ArrayList<>();
+
+	private double totalWeight = 0;
+
+	public AccessLogsGenerator(Path outputFile, long numLines) {
+		this.outputFile = outputFile;
+		this.numLines = numLines;
+	}
+
+	public void setNumThreadIds(int numThreadIds) {
+		if (numThreadIds < 1) {
+			throw new IllegalArgumentException("The number of thread IDs needs to be positive, but was " + numThreadIds + "!");
+		}
+
+		this.numThreadIds = numThreadIds;
+	}
+
+	/**
+	 * Sets the think time distribution in milliseconds.
+	 *
+	 * @param spec
+	 *            {@code exp:<mean>}, {@code uniform:<min>:<max>}, or {@code const:<value>}.
+	 */
+	public void setThinkTime(String spec) {
+		String[] parts = spec.split(":");
+
+		switch (parts[0]) {
+		case "exp":
+			this.thinkTime = exponential(Double.parseDouble(parts[1]));
+			break;
+		case "uniform":
+			long min = Long.parseLong(parts[1]);
+			long range = (Long.parseLong(parts[2]) - min) + 1;
+			this.thinkTime = rand -> min + (long) (rand.nextDouble() * range);
+			break;
+		case "const":
+			long value = Long.parseLong(parts[1]);
+			this.thinkTime = rand -> value;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown think time distribution " + spec);
+		}
+	}
+
+	/**
+	 * Sets the probability that a request of a thread starts a new session, i.e., is issued after
+	 * a gap of more than 30 minutes.
+	 */
+	public void setSessionGapProbability(double sessionGapProbability) {
+		this.sessionGapProbability = sessionGapProbability;
+	}
+
+	/**
+	 * Sets the probability that a line cannot be parsed.
+	 */
+	public void setMalformedProbability(double malformedProbability) {
+		this.malformedProbability = malformedProbability;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public void setStart(Instant start) {
+		this.start = start;
+	}
+
+	public void setOffset(ZoneOffset offset) {
+		this.offset = offset;
+	}
+
+	/**
+	 * Adds an endpoint to the mix. Path parameters in curly braces are replaced by random values.
+	 *
+	 * @param method
+	 *            The request method.
+	 * @param path
+	 *            The path, possibly with parameters, e.g., {@code /users/{id}}.
+	 * @param weight
+	 *            The relative frequency of the endpoint.
+	 */
+	public void addEndpoint(String method, String path, double weight) {
+		addEndpoint(method, path, new ArrayList<>(), weight);
+	}
+
+	private void addEndpoint(String method, String path, List<String> queryParams, double weight) {
+		totalWeight += weight;
+		endpoints.add(new WeightedEndpoint(method, path, queryParams, totalWeight));
+	}
+
+	/**
+	 * Adds all HTTP endpoints of the application to the mix, each with weight 1. Request
+	 * parameters are added as query string.
+	 *
+	 * @param application
+	 *            The application.
+	 */
+	public void addEndpoints(Application application) {
+		for (Endpoint<?> endpoint : application.getEndpoints()) {
+			if (endpoint instanceof HttpEndpoint) {
+				HttpEndpoint http = (HttpEndpoint) endpoint;
+				List<String> queryParams = new ArrayList<>();
+
+				for (HttpParameter param : http.getParameters()) {
+					if (param.getParameterType() == HttpParameterType.REQ_PARAM) {
+						queryParams.add(param.getName());
+					}
+				}
+
+				addEndpoint(http.getMethod(), http.getPath(), queryParams, 1);
+			}
+		}
+	}
+
+	/**
+	 * Adds the endpoints listed in a file with lines of the format {@code METHOD path [weight]}.
+	 *
+	 * @param endpointsFile
+	 *            The file.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public void addEndpoints(Path endpointsFile) throws IOException {
+		for (String line : Files.readAllLines(endpointsFile)) {
+			String[] parts = line.trim().split("\\s+");
+
+			if ((parts.length >= 2) && !parts[0].startsWith("#")) {
+				addEndpoint(parts[0], parts[1], parts.length > 2 ? Double.parseDouble(parts[2]) : 1);
+			}
+		}
+	}
+
+	public void generate() throws IOException {
+		if (endpoints.isEmpty()) {
+			addEndpoint("GET", "/", 5);
+			addEndpoint("GET", "/products/{id}", 10);
+			addEndpoint("GET", "/search?q={query}", 4);
+			addEndpoint("POST", "/cart/items", 2);
+			addEndpoint("GET", "/static/{file:*}", 8);
+			addEndpoint("POST", "/checkout", 1);
+		}
+
+		LOGGER.info("Generating {} lines for {} thread IDs to {}...", numLines, numThreadIds, outputFile);
+
+		Random rand = new Random(seed);
+		PriorityQueue<Client> clients = new PriorityQueue<>(numThreadIds);
+
+		for (int i = 0; i < numThreadIds; i++) {
+			clients.add(new Client(threadId(i), start.toEpochMilli() + thinkTime.applyAsLong(rand)));
+		}
+
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(outputFile), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			TimestampCache timestamps = new TimestampCache();
+			StringBuilder line = new StringBuilder();
+
+			for (long i = 0; i < numLines; i++) {
+				Client client = clients.poll();
+
+				line.setLength(0);
+				appendLine(line, client, timestamps.format(client.nextRequest), rand);
+
+				if (rand.nextDouble() < malformedProbability) {
+					// cutting the line before the end of the request makes it unparseable
+					line.setLength(rand.nextInt(line.indexOf(REQUEST_END)));
+				}
+
+				writer.append(line).append('\n');
+
+				client.nextRequest += thinkTime.applyAsLong(rand);
+
+				if (rand.nextDouble() < sessionGapProbability) {
+					client.nextRequest += SESSION_GAP;
+				}
+
+				clients.add(client);
+			}
+		}
+
+		LOGGER.info("Generation done.");
+	}
+
+	private void appendLine(StringBuilder line, Client client, String timestamp, Random rand) {
+		WeightedEndpoint endpoint = pickEndpoint(rand);
+
+		line.append(client.threadId).append(" - - [").append(timestamp).append("] \"").append(endpoint.method).append(' ');
+		appendPath(line, endpoint, rand);
+		line.append(REQUEST_END).append(" 200 ").append(100 + rand.nextInt(50000)).append(" \"-\" \"").append(USER_AGENTS[client.userAgent]).append('"');
+	}
+
+	private void appendPath(StringBuilder line, WeightedEndpoint endpoint, Random rand) {
+		Matcher matcher = PATTERN_URL_PART_PARAM.matcher(endpoint.path);
+		int lastEnd = 0;
+
+		while (matcher.find()) {
+			line.append(endpoint.path, lastEnd, matcher.start());
+
+			if (matcher.group(1).endsWith(":*")) {
+				appendRandomString(line, rand);
+				line.append('/');
+			}
+
+			appendRandomString(line, rand);
+			lastEnd = matcher.end();
+		}
+
+		line.append(endpoint.path, lastEnd, endpoint.path.length());
+
+		char separator = endpoint.path.indexOf('?') < 0 ? '?' : '&';
+
+		for (String param : endpoint.queryParams) {
+			line.append(separator).append(param).append('=');
+			appendRandomString(line, rand);
+			separator = '&';
+		}
+	}
+
+	private void appendRandomString(StringBuilder line, Random rand) {
+		int length = 1 + rand.nextInt(8);
+
+		for (int i = 0; i < length; i++) {
+			line.append(ALPHANUMERICS.charAt(rand.nextInt(ALPHANUMERICS.length())));
+		}
+	}
+
+	private WeightedEndpoint pickEndpoint(Random rand) {
+		double value = rand.nextDouble() * totalWeight;
+		int low = 0;
+		int high = endpoints.size() - 1;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (endpoints.get(mid).cumulativeWeight <= value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return endpoints.get(low);
+	}
+
+	private static String threadId(int index) {
+		return new StringBuilder().append("10.").append((index >>> 16) & 0xFF).append('.').append((index >>> 8) & 0xFF).append('.').append(index & 0xFF).toString();
+	}
+
+	private static ToLongFunction<Random> exponential(double mean) {
+		return rand -> (long) (-mean * Math.log(1 - rand.nextDouble()));
+	}
+
+	private class TimestampCache {
+
+		private long second = Long.MIN_VALUE;
+
+		private String formatted;
+
+		private String format(long millis) {
+			long currentSecond = Math.floorDiv(millis, 1000);
+
+			if (currentSecond != second) {
+				second = currentSecond;
+				formatted = TIMESTAMP_FORMAT.format(Instant.ofEpochSecond(currentSecond).atOffset(offset));
+			}
+
+			return formatted;
+		}
+
+	}
+
+	private static class Client implements Comparable<Client> {
+
+		private final String threadId;
+
+		private final int userAgent;
+
+		private long nextRequest;
+
+		private Client(String threadId, long nextRequest) {
+			this.threadId = threadId;
+			this.userAgent = Math.floorMod(threadId.hashCode(), USER_AGENTS.length);
+			this.nextRequest = nextRequest;
+		}
+
+		@Override
+		public int compareTo(Client other) {
+			int result = Long.compare(nextRequest, other.nextRequest);
+			return result != 0 ? result : threadId.compareTo(other.threadId);
+		}
+
+	}
+
+	private static class WeightedEndpoint {
+
+		private final String method;
+
+		private final String path;
+
+		private final List<String> queryParams;
+
+		private final double cumulativeWeight;
+
+		private WeightedEndpoint(String method, String path, List<String> queryParams, double cumulativeWeight) {
+			this.method = method;
+			this.path = path;
+			this.queryParams = queryParams;
+			this.cumulativeWeight = cumulativeWeight;
+		}
+
+	}
+
+}
@@ -0,0 +1,33 @@
+package org.continuity.access.logs.splitter.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
+
+/**
+ * Adds the written bytes to {@link Counter#BYTES_WRITTEN}. It is meant to be placed below a
+ * buffer, so that the counter is updated once per flushed buffer rather than per write.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
+
+	public CountingOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		METRICS.increment(Counter.BYTES_WRITTEN);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		METRICS.add(Counter.BYTES_WRITTEN, len);
+	}
+
+}
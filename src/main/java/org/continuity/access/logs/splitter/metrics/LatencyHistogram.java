@@ -0,0 +1,105 @@
+package org.continuity.access.logs.splitter.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with one bucket per power of two. Hence,
+ * recording is cheap enough for the hot path, and the reported percentiles are upper bounds that
+ * are at most twice the actual value.
+ */
+public class LatencyHistogram {
+
+	private static final int NUM_BUCKETS = 64;
+
+	private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+
+	private final LongAdder sum = new LongAdder();
+
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos
+	 *            The latency in nanoseconds.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		buckets[NUM_BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount() {
+		long count = 0;
+
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket holding the percentile.
+	 *
+	 * @param percentile
+	 *            The percentile between 0 and 100.
+	 * @return The latency in nanoseconds or 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = new long[NUM_BUCKETS];
+		long count = 0;
+
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+
+		long rank = (long) Math.ceil((percentile / 100) * count);
+		long seen = 0;
+
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += counts[i];
+
+			if ((seen >= rank) && (counts[i] > 0)) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+
+		return 0;
+	}
+
+	private static long upperBound(int bucket) {
+		return bucket >= (NUM_BUCKETS - 1) ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	/**
+	 * Summarizes the histogram with count, mean, percentiles, and maximum.
+	 *
+	 * @return The summary, ordered for reporting.
+	 */
+	public Map<String, Long> summary() {
+		Map<String, Long> summary = new LinkedHashMap<>();
+		long count = getCount();
+
+		summary.put("count", count);
+		summary.put("mean", count == 0 ? 0 : sum.sum() / count);
+		summary.put("p50", getPercentile(50));
+		summary.put("p90", getPercentile(90));
+		summary.put("p99", getPercentile(99));
+		summary.put("max", max.get());
+
+		return summary;
+	}
+
+}
@@ -0,0 +1,159 @@
+package org.continuity.access.logs.splitter.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Periodically logs a summary of the {@link PipelineMetrics} with the rates since the previous
+ * report. When closed, it logs a final summary with the overall rates and optionally writes it to
+ * a JSON file. Counters that are still 0 are left out of the log summaries.
+ */
+public class MetricsReporter implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetricsReporter.class);
+
+	private static final Set<Counter> RATED = EnumSet.of(Counter.LINES_READ, Counter.ENTRIES_PARSED, Counter.BYTES_WRITTEN, Counter.SESSIONS_SAMPLED);
+
+	private final PipelineMetrics metrics;
+
+	private final Path jsonFile;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final long startNanos;
+
+	private final long[] lastCounts = new long[Counter.values().length];
+
+	private long lastNanos;
+
+	/**
+	 * Creates and starts a reporter.
+	 *
+	 * @param metrics
+	 *            The metrics to be reported.
+	 * @param intervalSeconds
+	 *            The time between two reports. No periodic reports if 0.
+	 * @param jsonFile
+	 *            The file to write the final summary to. Can be {@code null}.
+	 */
+	public MetricsReporter(PipelineMetrics metrics, long intervalSeconds, Path jsonFile) {
+		this.metrics = metrics;
+		this.jsonFile = jsonFile;
+		this.startNanos = System.nanoTime();
+		this.lastNanos = startNanos;
+
+		for (Counter counter : Counter.values()) {
+			lastCounts[counter.ordinal()] = metrics.getCount(counter);
+		}
+
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-reporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		if (intervalSeconds > 0) {
+			scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	private synchronized void report() {
+		long now = System.nanoTime();
+		double seconds = (now - lastNanos) / 1e9;
+		StringBuilder summary = new StringBuilder();
+
+		for (Counter counter : Counter.values()) {
+			long count = metrics.getCount(counter);
+
+			if (count != 0) {
+				appendCounter(summary, counter, count, (count - lastCounts[counter.ordinal()]) / seconds);
+			}
+
+			lastCounts[counter.ordinal()] = count;
+		}
+
+		lastNanos = now;
+		appendGaugesAndLatency(summary, metrics.sampleGauges());
+
+		LOGGER.info("Metrics: {}", summary);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		scheduler.shutdownNow();
+
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		Map<String, Object> counts = new LinkedHashMap<>();
+		Map<String, Object> rates = new LinkedHashMap<>();
+		StringBuilder summary = new StringBuilder();
+
+		for (Counter counter : Counter.values()) {
+			long count = metrics.getCount(counter);
+			counts.put(counter.getKey(), count);
+
+			if (RATED.contains(counter)) {
+				rates.put(counter.getKey(), count / seconds);
+			}
+
+			if (count != 0) {
+				appendCounter(summary, counter, count, count / seconds);
+			}
+		}
+
+		Map<String, Integer> gauges = metrics.sampleGauges();
+		appendGaugesAndLatency(summary, gauges);
+
+		LOGGER.info("Final metrics after {} s: {}", String.format("%.1f", seconds), summary);
+
+		if (jsonFile != null) {
+			Map<String, Object> json = new LinkedHashMap<>();
+			json.put("durationSeconds", seconds);
+			json.put("counters", counts);
+			json.put("ratesPerSecond", rates);
+			json.put("gauges", gauges);
+			json.put("annotationLatencyNanos", metrics.getAnnotationLatency().summary());
+
+			new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(jsonFile.toFile(), json);
+			LOGGER.info("Wrote metrics to {}.", jsonFile);
+		}
+	}
+
+	private void appendCounter(StringBuilder summary, Counter counter, long count, double rate) {
+		if (summary.length() > 0) {
+			summary.append(", ");
+		}
+
+		summary.append(counter.getKey()).append('=').append(count);
+
+		if (RATED.contains(counter)) {
+			summary.append(" (").append(Math.round(rate)).append("/s)");
+		}
+	}
+
+	private void appendGaugesAndLatency(StringBuilder summary, Map<String, Integer> gauges) {
+		if (!gauges.isEmpty()) {
+			summary.append(", gauges=").append(gauges);
+		}
+
+		LatencyHistogram latency = metrics.getAnnotationLatency();
+
+		if (latency.getCount() > 0) {
+			summary.append(", annotationLatencyNanos=").append(latency.summary());
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package org.continuity.access.logs.splitter.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters, gauges, and histograms of the splitter and combiner pipelines. There is one instance
+ * per JVM, which is updated from the hot paths and read by the {@link MetricsReporter}. All
+ * updates are lock-free.
+ */
+public class PipelineMetrics {
+
+	private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+	private final LongAdder[] counters = new LongAdder[Counter.values().length];
+
+	private final Map<String, IntSupplier> gauges = new ConcurrentHashMap<>();
+
+	private final LatencyHistogram annotationLatency = new LatencyHistogram();
+
+	private PipelineMetrics() {
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new LongAdder();
+		}
+	}
+
+	public static PipelineMetrics get() {
+		return INSTANCE;
+	}
+
+	public void increment(Counter counter) {
+		counters[counter.ordinal()].increment();
+	}
+
+	public void decrement(Counter counter) {
+		counters[counter.ordinal()].decrement();
+	}
+
+	public void add(Counter counter, long value) {
+		counters[counter.ordinal()].add(value);
+	}
+
+	public long getCount(Counter counter) {
+		return counters[counter.ordinal()].sum();
+	}
+
+	/**
+	 * Registers a gauge that is sampled on each report, e.g., the depth of a queue. A gauge with
+	 * the same name is replaced.
+	 *
+	 * @param name
+	 *            The name of the gauge.
+	 * @param gauge
+	 *            Provides the current value.
+	 */
+	public void registerGauge(String name, IntSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+
+	public void unregisterGauge(String name) {
+		gauges.remove(name);
+	}
+
+	/**
+	 * Samples all registered gauges.
+	 *
+	 * @return The current values ordered by name.
+	 */
+	public Map<String, Integer> sampleGauges() {
+		Map<String, Integer> values = new TreeMap<>();
+		gauges.forEach((name, gauge) -> values.put(name, gauge.getAsInt()));
+		return values;
+	}
+
+	public LatencyHistogram getAnnotationLatency() {
+		return annotationLatency;
+	}
+
+	/**
+	 * The counted events. All but {@link #OPEN_WRITERS} only increase.
+	 */
+	public enum Counter {
+
+		LINES_READ("linesRead"), ENTRIES_PARSED("entriesParsed"), PARSE_FAILURES("parseFailures"), IGNORED("ignored"), UNMAPPED("unmapped"), SESSIONS_WRITTEN(
+				"sessionsWritten"), OPEN_WRITERS("openWriters"), BYTES_WRITTEN("bytesWritten"), SESSIONS_SAMPLED("sessionsSampled");
+
+		private final String key;
+
+		private Counter(String key) {
+			this.key = key;
+		}
+
+		/**
+		 * Gets the key used in reports.
+		 *
+		 * @return The key.
+		 */
+		public String getKey() {
+			return key;
+		}
+
+	}
+
+}
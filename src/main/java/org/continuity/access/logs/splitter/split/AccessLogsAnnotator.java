@@ -1,5 +1,6 @@
 package org.continuity.access.logs.splitter.split;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -10,11 +11,13 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.continuity.access.logs.splitter.AccessLogEntry;
-import org.continuity.commons.idpa.RequestUriMapper;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
 import org.continuity.idpa.annotation.ApplicationAnnotation;
 import org.continuity.idpa.annotation.EndpointAnnotation;
 import org.continuity.idpa.annotation.ParameterAnnotation;
 import org.continuity.idpa.application.Application;
+import org.continuity.idpa.application.Endpoint;
 import org.continuity.idpa.application.HttpEndpoint;
 import org.continuity.idpa.application.HttpParameter;
 import org.continuity.idpa.application.HttpParameterType;
@@ -28,6 +31,8 @@ public class AccessLogsAnnotator {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(AccessLogsAnnotator.class);
 
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
+
 	private static final Pattern PATTERN_URL_PART_PARAM = Pattern.compile("\\{([^{]*)\\}");
 
 	private static final String APPLICATION_JSON = "application/json";
@@ -38,57 +43,94 @@ public class AccessLogsAnnotator {
 
 	private static final String NEWLINE = "\\r\\n";
 
-	private final ApplicationAnnotation annotation;
-
-	private final RequestUriMapper mapper;
+	private final RequestUriTrie mapper;
 
 	private final InputFormatter inputFormatter = new InputFormatter();
 
+	private final Map<String, Template> templatePerEndpoint = new HashMap<>();
+
 	public AccessLogsAnnotator(Application application, ApplicationAnnotation annotation) {
 		this(application, annotation, true);
 	}
 
 	private AccessLogsAnnotator(Application application, ApplicationAnnotation annotation, boolean init) {
-		this.annotation = annotation;
-		this.mapper = new RequestUriMapper(application);
+		this.mapper = application == null ? null : new RequestUriTrie(application);
 
 		if (init) {
 			annotation.getEndpointAnnotations().stream().map(EndpointAnnotation::getParameterAnnotations).flatMap(List::stream).forEach(p -> p.getAnnotatedParameter().resolve(application));
+			initTemplates(application, annotation);
+		}
+	}
+
+	/**
+	 * The annotated path and body only depend on the endpoint. Hence, we create them once per
+	 * endpoint.
+	 */
+	private void initTemplates(Application application, ApplicationAnnotation annotation) {
+		for (Endpoint<?> endpoint : application.getEndpoints()) {
+			if (!(endpoint instanceof HttpEndpoint)) {
+				continue;
+			}
+
+			EndpointAnnotation endpointAnnotation = FindBy.find(ann -> Objects.equals(endpoint.getId(), ann.getAnnotatedEndpoint().getId()), EndpointAnnotation.class).in(annotation)
+					.getFound();
+
+			if (endpointAnnotation == null) {
+				LOGGER.warn("There is no annotation for endpoint {}! Will ignore the corresponding log entries.", endpoint.getId());
+			} else {
+				templatePerEndpoint.put(endpoint.getId(), createTemplate((HttpEndpoint) endpoint, endpointAnnotation));
+			}
+		}
+	}
+
+	private Template createTemplate(HttpEndpoint endpoint, EndpointAnnotation endpointAnnotation) {
+		Map<String, String> inputStringPerParam = getInputStringPerParam(endpointAnnotation);
+		String query = createQueryString(endpoint, inputStringPerParam);
+		StringBuilder newPath = new StringBuilder().append(createAnnotatedPath(endpoint, inputStringPerParam));
+
+		if ((query != null) && !query.isEmpty()) {
+			newPath.append("?");
+			newPath.append(query);
 		}
+
+		Template template = new Template(newPath.toString());
+		addBodyIfPresent(template, endpoint, inputStringPerParam);
+
+		return template;
 	}
 
 	public AccessLogEntry annotateLogEntry(AccessLogEntry logEntry) {
-		String[] pathAndQuery = logEntry.getPath().split("\\?");
-		String path;
+		String path = logEntry.getPath();
+		int queryStart = path.indexOf('?');
 
-		if (pathAndQuery.length == 0) {
-			path = logEntry.getPath();
-		} else {
-			path = pathAndQuery[0];
+		if (queryStart >= 0) {
+			path = path.substring(0, queryStart);
 		}
 
 		HttpEndpoint endpoint = mapper.map(path, logEntry.getRequestMethod());
 
 		if (endpoint == null) {
+			METRICS.increment(Counter.UNMAPPED);
 			LOGGER.debug("Ignoring log entry {}", logEntry);
 			return null;
 		}
 
-		EndpointAnnotation endpointAnnotation = FindBy.find(ann -> Objects.equals(endpoint.getId(), ann.getAnnotatedEndpoint().getId()), EndpointAnnotation.class).in(annotation).getFound();
-
-		Map<String, String> inputStringPerParam = getInputStringPerParam(endpointAnnotation);
-		String query = createQueryString(endpoint, inputStringPerParam);
-		StringBuilder newPath = new StringBuilder().append(createAnnotatedPath(endpoint, inputStringPerParam));
+		Template template = templatePerEndpoint.get(endpoint.getId());
 
-		if ((query != null) && !query.isEmpty()) {
-			newPath.append("?");
-			newPath.append(query);
+		if (template == null) {
+			METRICS.increment(Counter.UNMAPPED);
+			LOGGER.debug("Ignoring non-annotated log entry {}", logEntry);
+			return null;
 		}
 
-		AccessLogEntry newEntry = new AccessLogEntry(logEntry.getThreadId(), logEntry.getTimestamp(), logEntry.getRequestMethod(), newPath.toString());
-		addBodyIfPresent(newEntry, endpoint, inputStringPerParam);
+		AccessLogEntry newEntry = new AccessLogEntry(logEntry.getThreadId(), logEntry.getTimestampMillis(), logEntry.getRequestMethod(), template.path);
 		newEntry.setDelay(logEntry.getDelay());
 
+		if (template.body != null) {
+			newEntry.setBody(template.body);
+			newEntry.setContentType(template.contentType);
+		}
+
 		return newEntry;
 	}
 
@@ -125,16 +167,16 @@ public class AccessLogsAnnotator {
 				.collect(Collectors.joining("&"));
 	}
 
-	private void addBodyIfPresent(AccessLogEntry logEntry, HttpEndpoint endpoint, Map<String, String> inputStringPerParam) {
+	private void addBodyIfPresent(Template template, HttpEndpoint endpoint, Map<String, String> inputStringPerParam) {
 		Optional<String> bodyParam = endpoint.getParameters().stream().filter(p -> p.getParameterType() == HttpParameterType.BODY).map(HttpParameter::getName).findFirst();
 		List<String> formParams = endpoint.getParameters().stream().filter(p -> p.getParameterType() == HttpParameterType.FORM).map(HttpParameter::getName).collect(Collectors.toList());
 
 		if (bodyParam.isPresent()) {
-			logEntry.setBody(inputStringPerParam.get(bodyParam.get()).replace("\"", "\"\""));
-			logEntry.setContentType(APPLICATION_JSON);
+			template.body = inputStringPerParam.get(bodyParam.get()).replace("\"", "\"\"");
+			template.contentType = APPLICATION_JSON;
 		} else if (!formParams.isEmpty()) {
-			logEntry.setBody(createFormBody(formParams, inputStringPerParam));
-			logEntry.setContentType(MULTIPART_FORM_DATA);
+			template.body = createFormBody(formParams, inputStringPerParam);
+			template.contentType = MULTIPART_FORM_DATA;
 		}
 	}
 
@@ -164,6 +206,20 @@ public class AccessLogsAnnotator {
 		return ((HttpParameter) ann.getAnnotatedParameter().getReferred()).getName();
 	}
 
+	private static class Template {
+
+		private final String path;
+
+		private String body;
+
+		private String contentType;
+
+		private Template(String path) {
+			this.path = path;
+		}
+
+	}
+
 	private static class Noop extends AccessLogsAnnotator {
 
 		public Noop() {
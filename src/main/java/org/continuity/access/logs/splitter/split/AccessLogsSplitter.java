@@ -1,25 +1,47 @@
 package org.continuity.access.logs.splitter.split;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.ParseException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.format.SessionArchive;
+import org.continuity.access.logs.splitter.format.SessionArchiveWriter;
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.format.SessionOutputPool;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Parses an access logs file and splits it into one CSV file per session. A session is determined
- * by the thread ID and the delays between the requests.
+ * Parses an access logs file and splits it into one file per session, which is CSV by default. A
+ * session is determined by the thread ID and the delays between the requests. Instead of a single
+ * file, a directory or a glob pattern of rotated (and possibly gzipped) files can be passed, which
+ * are read oldest first.
+ * The access logs of several nodes are merged by timestamp. <br>
+ * The log time is tracked as a watermark. Each session is finished as soon as its thread ID has
+ * been idle for too long in log time and the collector of the thread ID is evicted, so that open
+ * files and live collectors are bounded by the number of concurrently active thread IDs. <br>
+ * In follow mode, the active access logs files are tailed until {@link #stop()} is called. <br>
+ * If a checkpoint file is set, the progress is recorded periodically and a killed split can be
+ * resumed from it with the same result. <br>
+ * The session files are written through a {@link SessionOutputPool}, which bounds the number of
+ * open files. Instead of one file per session, the sessions can be appended to a
+ * {@link SessionArchive}. <br>
+ * Logs that are not ordered by timestamp can be sorted out of core with an {@link ExternalSorter}
+ * first. <br>
+ * The split can be restricted to a time window, for which only the corresponding part of ordered,
+ * plain access logs files is read.
  *
  * @author Henning Schulz
  *
@@ -28,7 +50,16 @@ public class AccessLogsSplitter {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(AccessLogsSplitter.class);
 
-	private final Path pathToLogs;
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
+
+	private static final long WATERMARK_INTERVAL = 60 * 1000;
+
+	private static final String OPEN_FILES_GAUGE = "openSessionFiles";
+
+	/** The clock is checked only every 4096 entries. */
+	private static final long CHECKPOINT_CHECK_MASK = 4096 - 1;
+
+	private final List<Path> pathsToLogs;
 
 	private final Path pathToIgnored;
 
@@ -36,25 +67,241 @@ public class AccessLogsSplitter {
 
 	private final AccessLogsAnnotator annotator;
 
-	private final Map<String, SessionCollector> collectorPerThread = new ConcurrentHashMap<>();
+	private IgnoredEndpointsFilter ignoredEndpoints = IgnoredEndpointsFilter.NONE;
 
-	private final ExecutorService threadPool = Executors.newCachedThreadPool();
+	private int parsingThreads = 1;
 
-	private List<String> ignoredEndpoints = Collections.emptyList();
+	private int collectorThreads = Runtime.getRuntime().availableProcessors();
 
-	public AccessLogsSplitter(Path pathToLogs, Path outputDir, AccessLogsAnnotator annotator, Path pathToIgnored) {
-		this.pathToLogs = pathToLogs;
+	private boolean follow = false;
+
+	private SessionFormat outputFormat = SessionFormat.CSV;
+
+	private boolean archive = false;
+
+	private boolean compressArchive = false;
+
+	private int maxOpenFiles = SessionOutputPool.DEFAULT_MAX_OPEN_FILES;
+
+	private long sortMemory = 0;
+
+	private Path sortDirectory;
+
+	private long windowFrom = Long.MIN_VALUE;
+
+	private long windowTo = Long.MAX_VALUE;
+
+	private Path checkpointFile;
+
+	private long checkpointInterval = 60 * 1000;
+
+	private long nextCheckpoint;
+
+	private long numDispatched = 0;
+
+	private SessionCollectorShard[] shards;
+
+	private long watermark = Long.MIN_VALUE;
+
+	private long lastWatermark = Long.MIN_VALUE;
+
+	private volatile LogEntrySource source;
+
+	private volatile boolean stopped = false;
+
+	/**
+	 * Creates a splitter for the access logs of several nodes, which will be merged by timestamp.
+	 *
+	 * @param pathsToLogs
+	 *            One file, directory, or glob pattern per node.
+	 * @param outputDir
+	 *            The directory to write the sessions to.
+	 * @param annotator
+	 *            The annotator to be applied to each entry.
+	 * @param pathToIgnored
+	 *            File holding the ignored endpoints. Can be {@code null}.
+	 */
+	public AccessLogsSplitter(List<Path> pathsToLogs, Path outputDir, AccessLogsAnnotator annotator, Path pathToIgnored) {
+		this.pathsToLogs = pathsToLogs;
 		this.outputDir = outputDir;
 		this.pathToIgnored = pathToIgnored;
 		this.annotator = annotator;
 	}
 
+	public AccessLogsSplitter(Path pathToLogs, Path outputDir, AccessLogsAnnotator annotator, Path pathToIgnored) {
+		this(Collections.singletonList(pathToLogs), outputDir, annotator, pathToIgnored);
+	}
+
 	public AccessLogsSplitter(Path pathToLogs, Path outputDir, AccessLogsAnnotator annotator) {
 		this(pathToLogs, outputDir, annotator, null);
 	}
 
+	/**
+	 * Sets the number of threads parsing the access logs. If greater than 1, the file is
+	 * memory-mapped and parsed in chunks in parallel. Defaults to 1.
+	 *
+	 * @param parsingThreads
+	 *            The number of parsing threads.
+	 */
+	public void setParsingThreads(int parsingThreads) {
+		this.parsingThreads = parsingThreads;
+	}
+
+	/**
+	 * Sets the number of threads collecting the sessions. The thread IDs are distributed among
+	 * them by hash. Defaults to the number of available processors.
+	 *
+	 * @param collectorThreads
+	 *            The number of collector threads.
+	 */
+	public void setCollectorThreads(int collectorThreads) {
+		this.collectorThreads = collectorThreads;
+	}
+
+	/**
+	 * Sets the format of the session files. Defaults to {@link SessionFormat#CSV}.
+	 *
+	 * @param outputFormat
+	 *            The format.
+	 */
+	public void setOutputFormat(SessionFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	/**
+	 * Enables writing the sessions to a {@link SessionArchive} in the output directory rather
+	 * than one file per session. Defaults to {@code false}. Cannot be combined with checkpoints.
+	 * <br>
+	 * Each session is held in memory until it is finished, i.e., until its thread ID has been idle
+	 * for 30 minutes in log time, so the memory grows with the open sessions and their lengths. In
+	 * follow mode, the archive is flushed after each session, so that a killed split leaves a
+	 * readable archive of the finished sessions.
+	 *
+	 * @param archive
+	 *            Whether to write an archive.
+	 */
+	public void setArchive(boolean archive) {
+		this.archive = archive;
+	}
+
+	/**
+	 * Sets whether the sessions of an archive are to be deflated. Defaults to {@code false}.
+	 *
+	 * @param compressArchive
+	 *            Whether to compress the archive.
+	 */
+	public void setCompressArchive(boolean compressArchive) {
+		this.compressArchive = compressArchive;
+	}
+
+	/**
+	 * Restricts the split to the entries of a time window. The access logs need to be ordered by
+	 * timestamp, apart from a small disorder, as the part to be read is determined by a binary
+	 * search. Defaults to no restriction.
+	 *
+	 * @param from
+	 *            The start of the window in milliseconds (inclusive). {@link Long#MIN_VALUE} for
+	 *            no start.
+	 * @param to
+	 *            The end of the window in milliseconds (exclusive). {@link Long#MAX_VALUE} for no
+	 *            end.
+	 */
+	public void setTimeWindow(long from, long to) {
+		if (from >= to) {
+			throw new IllegalArgumentException("The start of the time window needs to be before its end!");
+		}
+
+		this.windowFrom = from;
+		this.windowTo = to;
+	}
+
+	/**
+	 * Sets the maximum number of session files to be held open at once. Defaults to
+	 * {@link SessionOutputPool#DEFAULT_MAX_OPEN_FILES}.
+	 *
+	 * @param maxOpenFiles
+	 *            The number of files.
+	 */
+	public void setMaxOpenFiles(int maxOpenFiles) {
+		this.maxOpenFiles = maxOpenFiles;
+	}
+
+	/**
+	 * Enables the external sort, which sorts the entries by thread ID and timestamp before
+	 * sessionizing them. It is meant for logs that are not ordered by timestamp or have too many
+	 * thread IDs to hold a collector for each. Defaults to {@code 0}, i.e., the entries are
+	 * collected in the order of the logs.
+	 *
+	 * @param sortMemory
+	 *            The approximate number of bytes the sort may hold in memory.
+	 */
+	public void setSortMemory(long sortMemory) {
+		this.sortMemory = sortMemory;
+	}
+
+	/**
+	 * Sets the directory to hold the sorted runs of the external sort. Defaults to a new directory
+	 * in {@code java.io.tmpdir}, so that runs left behind by a killed sort cannot be mistaken for
+	 * sessions. The runs are deleted afterwards.
+	 *
+	 * @param sortDirectory
+	 *            The directory.
+	 */
+	public void setSortDirectory(Path sortDirectory) {
+		this.sortDirectory = sortDirectory;
+	}
+
+	/**
+	 * Enables the follow mode, in which the access logs files are tailed rather than read up to
+	 * the end. Defaults to {@code false}.
+	 *
+	 * @param follow
+	 *            Whether to follow the access logs.
+	 */
+	public void setFollow(boolean follow) {
+		this.follow = follow;
+	}
+
+	/**
+	 * Sets the file to record checkpoints in. If it exists, the split is resumed from it. Once the
+	 * split is done, the file is deleted. Only supported for a single access logs source that is
+	 * not followed.
+	 *
+	 * @param checkpointFile
+	 *            The checkpoint file.
+	 */
+	public void setCheckpointFile(Path checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+
+	/**
+	 * Sets the time between two checkpoints. Defaults to one minute.
+	 *
+	 * @param checkpointInterval
+	 *            The interval in milliseconds.
+	 */
+	public void setCheckpointInterval(long checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Stops reading the access logs. The pending entries are still processed and all open
+	 * sessions are finished before {@link #parseAndSplit()} returns.
+	 *
+	 * @throws IOException
+	 *             If the access logs cannot be closed.
+	 */
+	public void stop() throws IOException {
+		stopped = true;
+		LogEntrySource current = source;
+
+		if (current != null) {
+			current.close();
+		}
+	}
+
 	public void parseAndSplit() throws IOException, InterruptedException {
-		LOGGER.info("Parsing access logs {}", pathToLogs);
+		LOGGER.info("Parsing access logs {}", pathsToLogs);
 		LOGGER.info("Writing sessions to {}", outputDir);
 
 		if (pathToIgnored != null) {
@@ -62,56 +309,310 @@ public class AccessLogsSplitter {
 			initIgnoredEndoints();
 		}
 
+		if (archive && (checkpointFile != null)) {
+			throw new IllegalStateException("Checkpoints are not supported when writing an archive!");
+		}
+
+		if ((sortMemory > 0) && (follow || (checkpointFile != null))) {
+			throw new IllegalStateException("The external sort cannot be combined with the follow mode or checkpoints!");
+		}
+
 		outputDir.toFile().mkdirs();
 
-		BufferedReader reader = Files.newBufferedReader(pathToLogs);
+		SessionArchiveWriter archiveWriter = archive ? new SessionArchiveWriter(outputDir, outputFormat, compressArchive) : null;
+
+		if ((archiveWriter != null) && follow) {
+			archiveWriter.setAutoFlush(true);
+		}
+		SessionOutputPool outputPool = archive ? null : new SessionOutputPool(maxOpenFiles);
+
+		if (outputPool != null) {
+			METRICS.registerGauge(OPEN_FILES_GAUGE, outputPool::getNumOpenFiles);
+		}
+
+		if (parsingThreads > 1) {
+			LOGGER.info("Parsing in parallel with {} threads.", parsingThreads);
+		}
+
+		if (sortMemory > 0) {
+			sortAndSplit(archiveWriter, outputPool);
+		} else {
+			collectInShards(archiveWriter, outputPool);
+		}
+
+		if (archiveWriter != null) {
+			archiveWriter.close();
+		}
+
+		if (outputPool != null) {
+			outputPool.close();
+			METRICS.unregisterGauge(OPEN_FILES_GAUGE);
+		}
+
+		if ((checkpointFile != null) && !stopped) {
+			Files.deleteIfExists(checkpointFile);
+		}
+	}
 
-		String line = reader.readLine();
+	/**
+	 * Dispatches the entries to the {@link SessionCollectorShard}s in the order of the logs.
+	 */
+	private void collectInShards(SessionArchiveWriter archiveWriter, SessionOutputPool outputPool) throws IOException, InterruptedException {
+		ExecutorService threadPool = Executors.newFixedThreadPool(collectorThreads);
+		shards = new SessionCollectorShard[collectorThreads];
+
+		for (int i = 0; i < collectorThreads; i++) {
+			shards[i] = new SessionCollectorShard(outputDir, annotator, outputFormat);
+			shards[i].setArchive(archiveWriter);
+			shards[i].setOutputPool(outputPool);
+			METRICS.registerGauge(queueDepthGauge(i), shards[i]::getQueueSize);
+			METRICS.registerGauge(liveCollectorsGauge(i), shards[i]::getNumCollectors);
+		}
+
+		source = openSource();
+
+		if (checkpointFile != null) {
+			initCheckpoints();
+		}
+
+		Arrays.stream(shards).forEach(threadPool::execute);
+
+		try {
+			// the source might have been opened after stopping
+			AccessLogEntry logEntry = stopped ? null : source.next();
+
+			while (logEntry != null) {
+				dispatch(logEntry);
+
+				advanceWatermark(logEntry.getTimestampMillis());
+
+				if ((checkpointFile != null) && ((++numDispatched & CHECKPOINT_CHECK_MASK) == 0) && (System.currentTimeMillis() >= nextCheckpoint)) {
+					checkpoint();
+				}
+
+				logEntry = source.next();
+			}
+		} finally {
+			source.close();
+		}
+
+		Arrays.stream(shards).forEach(SessionCollectorShard::stop);
+
+		threadPool.shutdown();
+
+		// the collectors might still have a backlog, which needs to be written completely
+		while (!threadPool.awaitTermination(1, TimeUnit.MINUTES)) {
+			LOGGER.info("Waiting for the session collectors to finish...");
+		}
+
+		for (int i = 0; i < shards.length; i++) {
+			METRICS.unregisterGauge(queueDepthGauge(i));
+			METRICS.unregisterGauge(liveCollectorsGauge(i));
+		}
+	}
+
+	/**
+	 * Sorts the entries by thread ID and timestamp with an {@link ExternalSorter} and sessionizes
+	 * one thread ID after the other. Hence, only one {@link SessionCollector} is held at a time
+	 * and the logs do not need to be ordered.
+	 */
+	private void sortAndSplit(SessionArchiveWriter archiveWriter, SessionOutputPool outputPool) throws IOException, InterruptedException {
+		Path runDir = sortDirectory != null ? sortDirectory : Files.createTempDirectory("access-logs-sort-");
+
+		try (ExternalSorter sorter = new ExternalSorter(runDir, sortMemory)) {
+			source = openSource();
 
-		while (line != null) {
-			AccessLogEntry logEntry;
 			try {
-				logEntry = AccessLogEntry.fromLogLine(line);
-			} catch (ParseException e) {
-				LOGGER.error("Cannot parse date!", e);
-				logEntry = null;
+				AccessLogEntry logEntry = stopped ? null : source.next();
+
+				while (logEntry != null) {
+					if (isIgnored(logEntry)) {
+						METRICS.increment(Counter.IGNORED);
+					} else {
+						sorter.add(logEntry);
+					}
+
+					logEntry = source.next();
+				}
+			} finally {
+				source.close();
+			}
+
+			LOGGER.info("Sorted {} entries. Sessionizing...", sorter.getNumEntries());
+
+			try (LogEntrySource sorted = sorter.sorted()) {
+				SessionCollector collector = null;
+				AccessLogEntry logEntry;
+
+				while ((logEntry = sorted.next()) != null) {
+					if ((collector == null) || !collector.getThreadId().equals(logEntry.getThreadId())) {
+						if (collector != null) {
+							collector.finish();
+						}
+
+						collector = new SessionCollector(logEntry.getThreadId(), outputDir, annotator, outputFormat);
+						collector.setArchive(archiveWriter);
+						collector.setOutputPool(outputPool);
+					}
+
+					collector.process(logEntry);
+				}
+
+				if (collector != null) {
+					collector.finish();
+				}
 			}
+		}
+	}
+
+	private void initCheckpoints() throws IOException {
+		if (!(source instanceof RotatedLogReader)) {
+			throw new IllegalStateException("Checkpoints are only supported for a single access logs source that is not followed!");
+		}
+
+		if (Files.exists(checkpointFile)) {
+			SplitCheckpoint checkpoint = SplitCheckpoint.read(checkpointFile);
 
-			if (logEntry == null) {
-				LOGGER.error("Cannot parse line {}", line);
+			List<SplitCheckpoint.ShardState> shardStates = checkpoint.getShards();
+
+			LOGGER.info("Resuming from checkpoint {} at {}:{} with {} thread IDs.", checkpointFile, checkpoint.getFile(), checkpoint.getPosition(),
+					shardStates.stream().mapToInt(s -> s.getCollectors().size()).sum());
+
+			((RotatedLogReader) source).resumeAt(Paths.get(checkpoint.getFile()), checkpoint.getPosition());
+
+			// with a different number of shards, the thread IDs are distributed differently
+			int maxMinSessionCounter = shardStates.stream().mapToInt(SplitCheckpoint.ShardState::getMinSessionCounter).max().orElse(1);
+
+			for (int i = 0; i < shards.length; i++) {
+				shards[i].restoreMinSessionCounter(shardStates.size() == shards.length ? shardStates.get(i).getMinSessionCounter() : maxMinSessionCounter);
 			}
 
-			if (!isIgnored(logEntry)) {
-				collectorForThread(logEntry.getThreadId()).offer(logEntry);
+			for (SplitCheckpoint.ShardState shardState : shardStates) {
+				for (SplitCheckpoint.CollectorState state : shardState.getCollectors()) {
+					shardForThread(state.getThreadId()).restore(state);
+				}
 			}
+		}
+
+		nextCheckpoint = System.currentTimeMillis() + checkpointInterval;
+	}
+
+	/**
+	 * Asks all shards for the state of their collectors. The last shard to respond writes the
+	 * checkpoint. As the shards process the requests in order, the checkpoints are written in
+	 * order, too.
+	 */
+	private void checkpoint() {
+		RotatedLogReader reader = (RotatedLogReader) source;
+		SplitCheckpoint checkpoint = new SplitCheckpoint(reader.positionFile().toString(), reader.position());
+		SplitCheckpoint.ShardState[] shardStates = new SplitCheckpoint.ShardState[shards.length];
+		AtomicInteger remaining = new AtomicInteger(shards.length);
+
+		for (int i = 0; i < shards.length; i++) {
+			int index = i;
+
+			shards[i].checkpoint(state -> {
+				shardStates[index] = state;
 
-			line = reader.readLine();
+				// the atomic decrement publishes the states to the last shard
+				if (remaining.decrementAndGet() == 0) {
+					checkpoint.setShards(Arrays.asList(shardStates));
+					writeCheckpoint(checkpoint);
+				}
+			});
 		}
 
-		collectorPerThread.values().forEach(SessionCollector::stop);
+		nextCheckpoint = System.currentTimeMillis() + checkpointInterval;
+	}
 
-		threadPool.shutdown();
-		threadPool.awaitTermination(1, TimeUnit.MINUTES);
+	private void writeCheckpoint(SplitCheckpoint checkpoint) {
+		try {
+			checkpoint.write(checkpointFile);
+			LOGGER.info("Wrote checkpoint at {}:{}.", checkpoint.getFile(), checkpoint.getPosition());
+		} catch (IOException e) {
+			LOGGER.error("Could not write checkpoint!", e);
+		}
 	}
 
-	private SessionCollector collectorForThread(String threadId) {
-		SessionCollector collector = collectorPerThread.get(threadId);
+	private LogEntrySource openSource() throws IOException {
+		if (pathsToLogs.size() == 1) {
+			return openSource(pathsToLogs.get(0));
+		}
+
+		LOGGER.info("Merging the access logs of {} sources by timestamp.", pathsToLogs.size());
 
-		if (collector == null) {
-			collector = new SessionCollector(threadId, outputDir, annotator);
-			collectorPerThread.put(threadId, collector);
-			threadPool.execute(collector);
+		List<LogEntrySource> sources = new ArrayList<>();
+
+		for (Path path : pathsToLogs) {
+			sources.add(openSource(path));
 		}
 
-		return collector;
+		return new MergingLogReader(sources);
+	}
+
+	private LogEntrySource openSource(Path path) throws IOException {
+		boolean windowed = (windowFrom != Long.MIN_VALUE) || (windowTo != Long.MAX_VALUE);
+
+		if (follow) {
+			LOGGER.info("Following {}", path);
+			FollowingLogReader reader = new FollowingLogReader(path);
+			return windowed ? new TimeWindowReader(reader, windowFrom, windowTo, -1) : reader;
+		} else {
+			RotatedLogReader reader = RotatedLogReader.of(path, parsingThreads);
+			reader.setTimeWindow(windowFrom, windowTo);
+			return reader;
+		}
+	}
+
+	/**
+	 * Lets the shards finish idle sessions once the log time has advanced by
+	 * {@link #WATERMARK_INTERVAL}.
+	 */
+	private void advanceWatermark(long timestamp) {
+		watermark = Math.max(watermark, timestamp);
+
+		if ((lastWatermark == Long.MIN_VALUE) || ((watermark - lastWatermark) >= WATERMARK_INTERVAL)) {
+			lastWatermark = watermark;
+
+			for (SessionCollectorShard shard : shards) {
+				shard.advanceWatermark(watermark);
+			}
+		}
+	}
+
+	private void dispatch(AccessLogEntry logEntry) {
+		if (isIgnored(logEntry)) {
+			METRICS.increment(Counter.IGNORED);
+		} else {
+			SessionCollectorShard shard = shardForThread(logEntry.getThreadId());
+			shard.offer(logEntry);
+
+			if (follow) {
+				// followed logs grow slowly, so we do not wait for a batch to be complete
+				shard.flush();
+			}
+		}
+	}
+
+	private static String queueDepthGauge(int shard) {
+		return "collectorQueueDepth-" + shard;
+	}
+
+	private static String liveCollectorsGauge(int shard) {
+		return "liveCollectors-" + shard;
+	}
+
+	private SessionCollectorShard shardForThread(String threadId) {
+		int hash = threadId.hashCode();
+		return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
 	}
 
 	private void initIgnoredEndoints() throws IOException {
-		this.ignoredEndpoints = Files.readAllLines(pathToIgnored);
+		this.ignoredEndpoints = IgnoredEndpointsFilter.fromFile(pathToIgnored);
 	}
 
 	private boolean isIgnored(AccessLogEntry logEntry) {
-		return ignoredEndpoints.contains(new StringBuilder().append(logEntry.getRequestMethod()).append(" ").append(logEntry.getPath()).toString());
+		return ignoredEndpoints.isIgnored(logEntry.getRequestMethod(), logEntry.getPath());
 	}
 
 }
@@ -0,0 +1,203 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+
+/**
+ * Bounded queue handing over entries from exactly one producer thread to exactly one consumer
+ * thread without locks. The entries are held in a ring of slots. The producer publishes them in
+ * batches, i.e., an offered entry is only visible to the consumer once {@link #getBatchSize()}
+ * entries have been offered or {@link #flush()} has been called. The consumer takes all published
+ * entries at once. <br>
+ * If the ring is full, the producer waits for the consumer, which limits the entries held on the
+ * heap. Both sides yield a few times and then park until the other side has made progress. The
+ * consumer is only woken up once per batch.
+ */
+public class EntryRingBuffer {
+
+	private static final int SPINS = 64;
+
+	private final AccessLogEntry[] slots;
+
+	private final int mask;
+
+	private final int batchSize;
+
+	/** Index of the next slot to be read. Only written by the consumer. */
+	private volatile long head = 0;
+
+	/** Index of the next slot to be written that is visible to the consumer. */
+	private volatile long published = 0;
+
+	private volatile boolean consumerWaiting = false;
+
+	private volatile boolean producerWaiting = false;
+
+	private volatile Thread consumer;
+
+	private volatile Thread producer;
+
+	// producer-local state
+
+	private long tail = 0;
+
+	private long cachedHead = 0;
+
+	/**
+	 * Creates a ring buffer.
+	 *
+	 * @param capacity
+	 *            The maximum number of held entries. Is rounded up to a power of two.
+	 * @param batchSize
+	 *            The number of entries to be published at once. Must not exceed the capacity.
+	 */
+	public EntryRingBuffer(int capacity, int batchSize) {
+		if ((capacity < 1) || (capacity > (1 << 30))) {
+			throw new IllegalArgumentException("The capacity needs to be between 1 and 2^30, but was " + capacity + "!");
+		}
+
+		int size = Integer.highestOneBit(capacity);
+
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		if ((batchSize < 1) || (batchSize > size)) {
+			throw new IllegalArgumentException("The batch size needs to be between 1 and the capacity " + size + ", but was " + batchSize + "!");
+		}
+
+		this.slots = new AccessLogEntry[size];
+		this.mask = size - 1;
+		this.batchSize = batchSize;
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Gets the number of published entries that have not been taken, yet. Can be called from any
+	 * thread.
+	 *
+	 * @return The number of entries.
+	 */
+	public int size() {
+		return (int) Math.max(published - head, 0);
+	}
+
+	/**
+	 * Adds an entry, waiting for the consumer if the ring is full. May only be called by the
+	 * producer.
+	 *
+	 * @param entry
+	 *            The entry.
+	 */
+	public void offer(AccessLogEntry entry) {
+		if ((tail - cachedHead) == slots.length) {
+			// publish what we have so that the consumer can make progress
+			flush();
+			awaitSpace();
+		}
+
+		slots[(int) tail & mask] = entry;
+		tail++;
+
+		if ((tail - published) >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Makes all offered entries visible to the consumer. May only be called by the producer.
+	 */
+	public void flush() {
+		if (tail == published) {
+			return;
+		}
+
+		// the volatile write orders the slot writes before it and the read of the flag after it
+		published = tail;
+
+		if (consumerWaiting) {
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	private void awaitSpace() {
+		int spins = 0;
+
+		while ((tail - (cachedHead = head)) == slots.length) {
+			if (spins < SPINS) {
+				spins++;
+				Thread.yield();
+			} else {
+				producer = Thread.currentThread();
+				producerWaiting = true;
+
+				if ((tail - head) == slots.length) {
+					LockSupport.park(this);
+				}
+
+				producerWaiting = false;
+			}
+		}
+	}
+
+	/**
+	 * Takes all published entries, waiting until there is at least one. May only be called by the
+	 * consumer.
+	 *
+	 * @param batch
+	 *            The array to hold the entries. At most its length is taken.
+	 * @return The number of entries taken.
+	 */
+	public int drainTo(AccessLogEntry[] batch) {
+		long current = head;
+		long available = awaitEntries(current);
+		int count = (int) Math.min(available - current, batch.length);
+
+		for (int i = 0; i < count; i++) {
+			int slot = (int) (current + i) & mask;
+			batch[i] = slots[slot];
+			slots[slot] = null;
+		}
+
+		// the volatile write orders the slot reads before it and the read of the flag after it
+		head = current + count;
+
+		if (producerWaiting) {
+			LockSupport.unpark(producer);
+		}
+
+		return count;
+	}
+
+	private long awaitEntries(long current) {
+		long available;
+		int spins = 0;
+
+		while ((available = published) == current) {
+			if (spins < SPINS) {
+				spins++;
+				Thread.yield();
+			} else {
+				consumer = Thread.currentThread();
+				consumerWaiting = true;
+
+				if (published == current) {
+					LockSupport.park(this);
+				}
+
+				consumerWaiting = false;
+			}
+		}
+
+		return available;
+	}
+
+}
@@ -0,0 +1,327 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts parsed entries by thread ID and timestamp with a bounded amount of memory. The entries are
+ * collected until the memory budget is exhausted. Then, they are sorted and spilled to a run file.
+ * Finally, the runs are merged, at most {@link #MAX_FAN_IN} at once, so that the number of open
+ * files and their buffers is bounded, too. <br>
+ * The sort is stable, i.e., entries of the same thread ID with equal timestamps keep the order in
+ * which they have been added. Only thread ID, timestamp, request method, and path are kept, which
+ * is all the access logs provide.
+ */
+public class ExternalSorter implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExternalSorter.class);
+
+	public static final int MAX_FAN_IN = 64;
+
+	/** Rough size of an entry on the heap, excluding the characters of its strings. */
+	private static final long ENTRY_OVERHEAD = 160;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final Comparator<AccessLogEntry> ORDER = Comparator.comparing(AccessLogEntry::getThreadId).thenComparingLong(AccessLogEntry::getTimestampMillis);
+
+	private final Path directory;
+
+	private final long memoryBudget;
+
+	private final List<AccessLogEntry> buffer = new ArrayList<>();
+
+	private long bufferedBytes = 0;
+
+	private final List<Path> runs = new ArrayList<>();
+
+	private int numRunFiles = 0;
+
+	private long numEntries = 0;
+
+	/**
+	 * Creates a sorter.
+	 *
+	 * @param directory
+	 *            The directory to hold the runs. It is created if necessary and the runs are
+	 *            deleted on {@link #close()}.
+	 * @param memoryBudget
+	 *            The approximate number of bytes the buffered entries may occupy.
+	 */
+	public ExternalSorter(Path directory, long memoryBudget) {
+		this.directory = directory;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Adds an entry, possibly spilling the buffered entries to a new run.
+	 *
+	 * @param entry
+	 *            The entry.
+	 * @throws IOException
+	 *             If the run cannot be written.
+	 */
+	public void add(AccessLogEntry entry) throws IOException {
+		buffer.add(entry);
+		bufferedBytes += ENTRY_OVERHEAD + (2 * (entry.getThreadId().length() + entry.getPath().length()));
+		numEntries++;
+
+		if (bufferedBytes >= memoryBudget) {
+			spill();
+		}
+	}
+
+	public long getNumEntries() {
+		return numEntries;
+	}
+
+	/**
+	 * Returns all added entries in order. If nothing has been spilled, the entries are sorted in
+	 * memory. No entries may be added afterwards.
+	 *
+	 * @return The sorted entries.
+	 * @throws IOException
+	 *             If the runs cannot be merged.
+	 */
+	public LogEntrySource sorted() throws IOException {
+		if (runs.isEmpty()) {
+			buffer.sort(ORDER);
+			return new BufferSource(buffer);
+		}
+
+		if (!buffer.isEmpty()) {
+			spill();
+		}
+
+		// merge runs in several passes to bound the number of open runs
+		while (runs.size() > MAX_FAN_IN) {
+			List<Path> group = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+			runs.subList(0, MAX_FAN_IN).clear();
+
+			LOGGER.info("Merging {} runs into one. {} runs remaining.", group.size(), runs.size());
+
+			Path merged = newRunFile();
+
+			try (RunMerger merger = new RunMerger(group); DataOutputStream out = openRun(merged)) {
+				AccessLogEntry entry;
+
+				while ((entry = merger.next()) != null) {
+					writeEntry(out, entry);
+				}
+			}
+
+			for (Path run : group) {
+				Files.delete(run);
+			}
+
+			// the merged run holds the entries added first and needs to stay first for stability
+			runs.add(0, merged);
+		}
+
+		LOGGER.info("Merging {} runs of {} entries.", runs.size(), numEntries);
+
+		return new RunMerger(new ArrayList<>(runs));
+	}
+
+	private void spill() throws IOException {
+		buffer.sort(ORDER);
+
+		Path run = newRunFile();
+		LOGGER.info("Spilling {} entries to {}.", buffer.size(), run);
+
+		try (DataOutputStream out = openRun(run)) {
+			for (AccessLogEntry entry : buffer) {
+				writeEntry(out, entry);
+			}
+		}
+
+		runs.add(run);
+		buffer.clear();
+		bufferedBytes = 0;
+	}
+
+	private Path newRunFile() throws IOException {
+		Files.createDirectories(directory);
+		return directory.resolve("run-" + (numRunFiles++) + ".bin");
+	}
+
+	private DataOutputStream openRun(Path run) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE));
+	}
+
+	private void writeEntry(DataOutputStream out, AccessLogEntry entry) throws IOException {
+		writeString(out, entry.getThreadId());
+		out.writeLong(entry.getTimestampMillis());
+		writeString(out, entry.getRequestMethod());
+		writeString(out, entry.getPath());
+	}
+
+	private void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Deletes the runs.
+	 */
+	@Override
+	public void close() throws IOException {
+		buffer.clear();
+
+		for (Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+
+		runs.clear();
+
+		if (Files.isDirectory(directory)) {
+			try {
+				Files.delete(directory);
+			} catch (IOException e) {
+				LOGGER.warn("Could not delete {}: {}", directory, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Returns the entries of a sorted list.
+	 */
+	private static class BufferSource implements LogEntrySource {
+
+		private final List<AccessLogEntry> entries;
+
+		private int index = 0;
+
+		private BufferSource(List<AccessLogEntry> entries) {
+			this.entries = entries;
+		}
+
+		@Override
+		public AccessLogEntry next() {
+			return index < entries.size() ? entries.get(index++) : null;
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+	/**
+	 * Merges sorted runs. Entries comparing equal are taken from the earlier run first, which keeps
+	 * the sort stable.
+	 */
+	private static class RunMerger implements LogEntrySource {
+
+		private final PriorityQueue<RunReader> heads;
+
+		private final List<RunReader> readers = new ArrayList<>();
+
+		private RunMerger(List<Path> runs) throws IOException {
+			this.heads = new PriorityQueue<>(Math.max(runs.size(), 1), Comparator.<RunReader, AccessLogEntry> comparing(r -> r.entry, ORDER).thenComparingInt(r -> r.index));
+
+			try {
+				for (int i = 0; i < runs.size(); i++) {
+					RunReader reader = new RunReader(i, runs.get(i));
+					readers.add(reader);
+
+					if (reader.advance()) {
+						heads.add(reader);
+					}
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		@Override
+		public AccessLogEntry next() throws IOException {
+			RunReader head = heads.poll();
+
+			if (head == null) {
+				return null;
+			}
+
+			AccessLogEntry entry = head.entry;
+
+			if (head.advance()) {
+				heads.add(head);
+			}
+
+			return entry;
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (RunReader reader : readers) {
+				reader.in.close();
+			}
+		}
+
+	}
+
+	private static class RunReader {
+
+		private final int index;
+
+		private final DataInputStream in;
+
+		private byte[] bytes = new byte[256];
+
+		private AccessLogEntry entry;
+
+		private RunReader(int index, Path run) throws IOException {
+			this.index = index;
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+		}
+
+		private boolean advance() throws IOException {
+			String threadId;
+
+			try {
+				threadId = readString();
+			} catch (EOFException e) {
+				entry = null;
+				return false;
+			}
+
+			long timestamp = in.readLong();
+			String method = readString();
+			String path = readString();
+
+			entry = new AccessLogEntry(threadId, timestamp, method, path);
+			return true;
+		}
+
+		private String readString() throws IOException {
+			int length = in.readInt();
+
+			if (length > bytes.length) {
+				bytes = new byte[Math.max(length, 2 * bytes.length)];
+			}
+
+			in.readFully(bytes, 0, length);
+			return new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+
+	}
+
+}
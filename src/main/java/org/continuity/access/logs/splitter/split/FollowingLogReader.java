@@ -0,0 +1,244 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.AccessLogLineParser;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tails the active access logs file like {@code tail -F}. The file is read from the beginning and
+ * then followed as it grows. {@link #next()} blocks until a complete line has been written. <br>
+ * Rotation is detected by a changed file key (the old file has been moved away and a new one has
+ * been created) or a shrunk file (the file has been truncated in place). In both cases, the rest
+ * of the old file is read before the new one is opened. Changes are awaited with a
+ * {@link WatchService} on the parent directory, which is polled in addition, because not every
+ * platform delivers events timely.
+ */
+public class FollowingLogReader implements LogEntrySource {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FollowingLogReader.class);
+
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
+
+	private static final long POLL_INTERVAL_MILLIS = 1000;
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private final Path pathToLogs;
+
+	private final AccessLogLineParser parser = new AccessLogLineParser();
+
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+	private final Deque<String> lines = new ArrayDeque<>();
+
+	private byte[] partialLine = new byte[256];
+
+	private int partialLength = 0;
+
+	private FileChannel channel;
+
+	private Object fileKey;
+
+	private long position;
+
+	private WatchService watchService;
+
+	private volatile boolean closed = false;
+
+	public FollowingLogReader(Path pathToLogs) {
+		this.pathToLogs = pathToLogs.toAbsolutePath();
+	}
+
+	/**
+	 * Returns the next entry, waiting for it to be written if necessary.
+	 *
+	 * @return The next entry or {@code null} if the reader has been closed.
+	 */
+	@Override
+	public AccessLogEntry next() throws IOException, InterruptedException {
+		if (watchService == null) {
+			watchService = pathToLogs.getFileSystem().newWatchService();
+			pathToLogs.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+
+		while (!closed) {
+			String line = lines.poll();
+
+			if (line != null) {
+				AccessLogEntry entry = parseLine(line);
+
+				if (entry != null) {
+					return entry;
+				}
+			} else if ((channel == null) && !openFile()) {
+				awaitChange();
+			} else if (read() == 0) {
+				if (isRotated()) {
+					// the old file might have been extended right before the rotation
+					if (read() == 0) {
+						LOGGER.info("{} has been rotated. Continuing with the new file.", pathToLogs);
+						completePartialLine();
+						closeFile();
+					}
+				} else {
+					awaitChange();
+				}
+			}
+		}
+
+		closeFile();
+		return null;
+	}
+
+	private boolean openFile() throws IOException {
+		try {
+			channel = FileChannel.open(pathToLogs, StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+
+		fileKey = Files.readAttributes(pathToLogs, BasicFileAttributes.class).fileKey();
+		position = 0;
+		return true;
+	}
+
+	private void closeFile() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * Reads the available bytes and splits them into lines. An incomplete last line is kept until
+	 * it is completed.
+	 *
+	 * @return The number of bytes read.
+	 */
+	private int read() throws IOException {
+		readBuffer.clear();
+		int read = channel.read(readBuffer, position);
+
+		if (read <= 0) {
+			return 0;
+		}
+
+		position += read;
+
+		for (int i = 0; i < read; i++) {
+			byte b = readBuffer.get(i);
+
+			if (b == '\n') {
+				completePartialLine();
+			} else {
+				if (partialLength == partialLine.length) {
+					partialLine = Arrays.copyOf(partialLine, 2 * partialLine.length);
+				}
+
+				partialLine[partialLength++] = b;
+			}
+		}
+
+		return read;
+	}
+
+	private void completePartialLine() {
+		int length = partialLength;
+
+		if ((length > 0) && (partialLine[length - 1] == '\r')) {
+			length--;
+		}
+
+		if (length > 0) {
+			lines.add(new String(partialLine, 0, length, StandardCharsets.UTF_8));
+		}
+
+		partialLength = 0;
+	}
+
+	private boolean isRotated() throws IOException {
+		BasicFileAttributes attributes;
+
+		try {
+			attributes = Files.readAttributes(pathToLogs, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			// moved away, but the new file has not been created, yet
+			return false;
+		}
+
+		return !Objects.equals(fileKey, attributes.fileKey()) || (attributes.size() < position);
+	}
+
+	private void awaitChange() throws InterruptedException {
+		WatchKey key;
+
+		try {
+			key = watchService.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (ClosedWatchServiceException e) {
+			return;
+		}
+
+		if (key != null) {
+			key.pollEvents();
+			key.reset();
+		}
+	}
+
+	private AccessLogEntry parseLine(String line) {
+		METRICS.increment(Counter.LINES_READ);
+		AccessLogEntry entry;
+
+		try {
+			entry = parser.parse(line);
+		} catch (ParseException e) {
+			LOGGER.error("Cannot parse date!", e);
+			entry = null;
+		}
+
+		if (entry == null) {
+			METRICS.increment(Counter.PARSE_FAILURES);
+			LOGGER.error("Cannot parse line {}", line);
+		} else {
+			METRICS.increment(Counter.ENTRIES_PARSED);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Stops following. Can be called from any thread. A blocked {@link #next()} returns
+	 * {@code null} shortly after.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+
+		if (watchService != null) {
+			watchService.close();
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether a request is to be ignored. The rules are given one per line in the format
+ * {@code METHOD path}, where the method can be {@code *} for any method. The path can be
+ * <ul>
+ * <li>an exact path, e.g., {@code GET /health},</li>
+ * <li>a prefix ending with {@code *}, e.g., {@code GET /static/*},</li>
+ * <li>or a pattern with {@code *} at arbitrary positions, e.g., <code>GET /users/*&#47;avatar</code>.
+ * A {@code *} matches any sequence of characters, including {@code /} and {@code ?}.</li>
+ * </ul>
+ * Empty lines and lines starting with {@code #} are skipped. <br>
+ * Exact paths are looked up by hash. Prefixes and patterns are compiled into one character trie
+ * per method, in which each {@code *} is an edge to a node that loops on any character. The trie
+ * is matched as an automaton by advancing the set of active nodes character by character. As
+ * rules sharing a literal part share their nodes, the costs of a check depend on the length of the
+ * path and the number of nodes active at once rather than on the number of rules. Checking ASCII
+ * paths does not allocate memory.
+ */
+public class IgnoredEndpointsFilter {
+
+	public static final IgnoredEndpointsFilter NONE = new IgnoredEndpointsFilter(Collections.emptyList());
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IgnoredEndpointsFilter.class);
+
+	private static final String ANY_METHOD = "*";
+
+	private static final char WILDCARD = '*';
+
+	private final Map<String, Set<String>> exactPathsPerMethod = new HashMap<>();
+
+	private final Map<String, Node> rootPerMethod = new HashMap<>();
+
+	private int numNodes = 0;
+
+	private final ThreadLocal<ActiveNodes> activeNodes;
+
+	public IgnoredEndpointsFilter(List<String> rules) {
+		for (String rule : rules) {
+			addRule(rule.trim());
+		}
+
+		int size = numNodes;
+		this.activeNodes = ThreadLocal.withInitial(() -> new ActiveNodes(size));
+	}
+
+	/**
+	 * Reads the rules from a file.
+	 *
+	 * @param pathToIgnored
+	 *            The file holding one rule per line.
+	 * @return The filter.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public static IgnoredEndpointsFilter fromFile(Path pathToIgnored) throws IOException {
+		return new IgnoredEndpointsFilter(Files.readAllLines(pathToIgnored));
+	}
+
+	private void addRule(String rule) {
+		if (rule.isEmpty() || rule.startsWith("#")) {
+			return;
+		}
+
+		int separator = rule.indexOf(' ');
+
+		if (separator < 0) {
+			LOGGER.warn("Ignoring invalid rule '{}'. Expected format: METHOD path", rule);
+			return;
+		}
+
+		String method = rule.substring(0, separator);
+		String path = rule.substring(separator + 1);
+		int wildcard = path.indexOf(WILDCARD);
+
+		if (wildcard < 0) {
+			exactPathsPerMethod.computeIfAbsent(method, m -> new HashSet<>()).add(path);
+			return;
+		}
+
+		Node node = rootPerMethod.computeIfAbsent(method, m -> newNode(false));
+
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+
+			if (c == WILDCARD) {
+				if (node.wildcard == null) {
+					node.wildcard = newNode(true);
+				}
+
+				node = node.wildcard;
+			} else {
+				node = node.child(c, this);
+			}
+		}
+
+		node.end = true;
+	}
+
+	private Node newNode(boolean loop) {
+		return new Node(numNodes++, loop);
+	}
+
+	/**
+	 * Checks whether the request is to be ignored.
+	 *
+	 * @param method
+	 *            The request method.
+	 * @param path
+	 *            The request path, including the query string.
+	 * @return {@code true} if any rule matches.
+	 */
+	public boolean isIgnored(String method, String path) {
+		return isIgnoredFor(method, path) || isIgnoredFor(ANY_METHOD, path);
+	}
+
+	private boolean isIgnoredFor(String method, String path) {
+		Set<String> exactPaths = exactPathsPerMethod.get(method);
+
+		if ((exactPaths != null) && exactPaths.contains(path)) {
+			return true;
+		}
+
+		Node root = rootPerMethod.get(method);
+		return (root != null) && matches(root, path);
+	}
+
+	/**
+	 * Advances the set of active nodes along the path. A {@code *} node stays active on any
+	 * character.
+	 */
+	private boolean matches(Node root, String path) {
+		ActiveNodes active = activeNodes.get();
+		active.clear();
+
+		if (active.add(root)) {
+			return true;
+		}
+
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			active.swap();
+
+			for (int j = 0; j < active.previousSize; j++) {
+				Node node = active.previous[j];
+				Node child = node.get(c);
+
+				if ((node.loop && active.add(node)) || ((child != null) && active.add(child))) {
+					return true;
+				}
+			}
+
+			if (active.size == 0) {
+				return false;
+			}
+		}
+
+		for (int j = 0; j < active.size; j++) {
+			if (active.nodes[j].end) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static class Node {
+
+		private final int id;
+
+		/** Whether the node is reached via a {@code *} and, thus, loops on any character. */
+		private final boolean loop;
+
+		private Map<Character, Node> children;
+
+		/** The node reached via a {@code *}. It can be entered without consuming a character. */
+		private Node wildcard;
+
+		private boolean end = false;
+
+		private Node(int id, boolean loop) {
+			this.id = id;
+			this.loop = loop;
+		}
+
+		private Node get(char c) {
+			return children == null ? null : children.get(c);
+		}
+
+		private Node child(char c, IgnoredEndpointsFilter filter) {
+			if (children == null) {
+				children = new HashMap<>();
+			}
+
+			return children.computeIfAbsent(c, k -> filter.newNode(false));
+		}
+
+	}
+
+	/**
+	 * The active nodes before and after the current character. Each node is added at most once
+	 * per character, which is tracked by marking it with the number of the character.
+	 */
+	private static class ActiveNodes {
+
+		private Node[] nodes;
+
+		private int size = 0;
+
+		private Node[] previous;
+
+		private int previousSize = 0;
+
+		private final int[] marks;
+
+		private int mark = 0;
+
+		private ActiveNodes(int numNodes) {
+			this.nodes = new Node[numNodes];
+			this.previous = new Node[numNodes];
+			this.marks = new int[numNodes];
+		}
+
+		private void clear() {
+			size = 0;
+			nextMark();
+		}
+
+		private void swap() {
+			Node[] tmp = previous;
+			previous = nodes;
+			previousSize = size;
+			nodes = tmp;
+			size = 0;
+			nextMark();
+		}
+
+		private void nextMark() {
+			if (++mark == 0) {
+				Arrays.fill(marks, 0);
+				mark = 1;
+			}
+		}
+
+		/**
+		 * Adds the node and the {@code *} nodes that can be entered from it.
+		 *
+		 * @return {@code true} if a {@code *} at the end of a rule has been entered, which
+		 *         matches any remainder of the path.
+		 */
+		private boolean add(Node node) {
+			while ((node != null) && (marks[node.id] != mark)) {
+				marks[node.id] = mark;
+				nodes[size++] = node;
+
+				if (node.loop && node.end) {
+					return true;
+				}
+
+				node = node.wildcard;
+			}
+
+			return false;
+		}
+
+	}
+
+}
@@ -1,5 +1,10 @@
 package org.continuity.access.logs.splitter.split;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -22,16 +27,13 @@ import org.continuity.idpa.serialization.IdpaSerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
-import com.fasterxml.jackson.databind.util.RawValue;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
+ * Formats inputs as JMeter strings. An input string only depends on the input, so it is computed
+ * once per input instance and cached. Hence, inputs must not be modified after they have been
+ * formatted. JSON inputs are written with a streaming generator instead of building a tree first.
  *
  * TODO: Copied from continuity.jmeter project. To be merged.
  * 
@@ -42,14 +44,36 @@ public class InputFormatter {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(InputFormatter.class);
 
+	private static final Pattern RANDOM_STRING_PATTERN = Pattern.compile("(\\[[^\\[\\]]*\\])\\{([0-9]+)\\}");
+
+	private static final JsonFactory JSON_FACTORY = IdpaSerializationUtils.getDefaultJsonObjectMapper().getFactory();
+
+	// the inputs override equals() comparing all fields, which is expensive for nested inputs
+	private final Map<Input, String> inputStringPerInput = Collections.synchronizedMap(new IdentityHashMap<>());
+
 	/**
-	 * Serializes input into a jmeter compatible string.
+	 * Serializes input into a jmeter compatible string. The string is cached per input instance.
 	 *
 	 * @param input
 	 *            The input, which has to be serialized
 	 * @return input string
 	 */
 	public String getInputString(Input input) {
+		String inputString = inputStringPerInput.get(input);
+
+		if (inputString == null) {
+			// nested inputs are formatted recursively, so we must not hold the lock while formatting
+			inputString = formatInput(input);
+
+			if (inputString != null) {
+				inputStringPerInput.put(input, inputString);
+			}
+		}
+
+		return inputString;
+	}
+
+	private String formatInput(Input input) {
 		if ((input instanceof ExtractedInput) || (input instanceof CounterInput) || (input instanceof CsvInput) || (input instanceof CsvColumnInput)) {
 			return "${" + input.getId() + "}";
 		} else if (input instanceof DirectListInput) {
@@ -117,7 +141,7 @@ public class InputFormatter {
 	}
 
 	private String formatRandomString(RandomStringInput input) {
-		Matcher matcher = Pattern.compile("(\\[[^\\[\\]]*\\])\\{([0-9]+)\\}").matcher(input.getTemplate());
+		Matcher matcher = RANDOM_STRING_PATTERN.matcher(input.getTemplate());
 
 		StringBuilder builder = new StringBuilder();
 
@@ -136,11 +160,7 @@ public class InputFormatter {
 			builder.append(matcher.group(2));
 			builder.append(",");
 
-			for (char c = '!'; c <= '~'; c++) {
-				if (Character.toString(c).matches(matcher.group(1))) {
-					builder.append(c);
-				}
-			}
+			appendCharacterClass(builder, matcher.group(1));
 
 			builder.append(",)}");
 		}
@@ -152,50 +172,65 @@ public class InputFormatter {
 		return builder.toString();
 	}
 
-	private String formatLegacyJsonInput(JsonInput jsonInput) {
-		ObjectMapper mapper = IdpaSerializationUtils.getDefaultJsonObjectMapper();
+	/**
+	 * Appends all printable ASCII characters matching the character class. The class is compiled
+	 * once and the matcher is reused for all characters.
+	 */
+	private void appendCharacterClass(StringBuilder builder, String characterClass) {
+		Matcher matcher = Pattern.compile(characterClass).matcher("");
 
-		JsonNodeFactory factory = JsonNodeFactory.instance;
+		for (char c = '!'; c <= '~'; c++) {
+			if (matcher.reset(String.valueOf(c)).matches()) {
+				builder.append(c);
+			}
+		}
+	}
+
+	private String formatLegacyJsonInput(JsonInput jsonInput) {
 		switch (jsonInput.getType()) {
 		case STRING:
 			return getInputString(jsonInput.getInput());
 		case NUMBER:
 			return getInputString(jsonInput.getInput());
 		case OBJECT:
-			ObjectNode jsonObject = factory.objectNode();
+			// later items with the same name replace earlier ones, but keep their position
+			Map<String, JsonInput> itemPerName = new LinkedHashMap<>();
+
 			if (null != jsonInput.getItems()) {
 				for (JsonInput nestedInput : jsonInput.getItems()) {
-					if (nestedInput.getType().equals(DataType.STRING)) {
-						// Value is added with quotes
-						jsonObject.set(nestedInput.getName(), new TextNode(getInputString(nestedInput)));
-					} else {
-						// Value is added without quotes
-						jsonObject.putRawValue(nestedInput.getName(), new RawValue(getInputString(nestedInput)));
-					}
+					itemPerName.put(nestedInput.getName(), nestedInput);
 				}
 			}
-			try {
-				return mapper.writeValueAsString(jsonObject);
-			} catch (JsonProcessingException e) {
-				e.printStackTrace();
+
+			try (StringWriter writer = new StringWriter(); JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+				generator.writeStartObject();
+
+				for (Map.Entry<String, JsonInput> entry : itemPerName.entrySet()) {
+					generator.writeFieldName(entry.getKey());
+					writeLegacyJsonValue(generator, entry.getValue());
+				}
+
+				generator.writeEndObject();
+				generator.flush();
+				return writer.toString();
+			} catch (IOException e) {
+				LOGGER.error("Error during formatting of legacy JsonInput", e);
 			}
 			return null;
 		case ARRAY:
-			ArrayNode arrayNode = factory.arrayNode();
-			if (null != jsonInput.getItems()) {
-				for (JsonInput nestedInput : jsonInput.getItems()) {
-					if (nestedInput.getType().equals(DataType.STRING)) {
-						// Value is added with quotes
-						arrayNode.add(getInputString(nestedInput));
-					} else {
-						// Value is added without quotes
-						arrayNode.addRawValue(new RawValue(getInputString(nestedInput)));
+			try (StringWriter writer = new StringWriter(); JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+				generator.writeStartArray();
+
+				if (null != jsonInput.getItems()) {
+					for (JsonInput nestedInput : jsonInput.getItems()) {
+						writeLegacyJsonValue(generator, nestedInput);
 					}
 				}
-			}
-			try {
-				return mapper.writeValueAsString(arrayNode);
-			} catch (JsonProcessingException e) {
+
+				generator.writeEndArray();
+				generator.flush();
+				return writer.toString();
+			} catch (IOException e) {
 				LOGGER.error("Error during formatting of legacy JsonInput", e);
 			}
 			return null;
@@ -205,47 +240,61 @@ public class InputFormatter {
 		}
 	}
 
-	private String formatJsonInput(JsonInput input) {
-		ObjectMapper mapper = IdpaSerializationUtils.getDefaultJsonObjectMapper();
+	private void writeLegacyJsonValue(JsonGenerator generator, JsonInput nestedInput) throws IOException {
+		if (nestedInput.getType().equals(DataType.STRING)) {
+			// Value is added with quotes
+			generator.writeString(getInputString(nestedInput));
+		} else {
+			// Value is added without quotes
+			generator.writeRawValue(getInputString(nestedInput));
+		}
+	}
 
-		try {
-			return mapper.writeValueAsString(convertJsonItem(input.getJson()));
-		} catch (JsonProcessingException e) {
+	private String formatJsonInput(JsonInput input) {
+		try (StringWriter writer = new StringWriter(); JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+			writeJsonItem(generator, input.getJson());
+			generator.flush();
+			return writer.toString();
+		} catch (IOException e) {
 			LOGGER.error("Error during formatting of new JsonInput", e);
 			return null;
 		}
 	}
 
-	private JsonNode convertJsonItem(JsonItem item) {
-		JsonNodeFactory factory = JsonNodeFactory.instance;
-
+	private void writeJsonItem(JsonGenerator generator, JsonItem item) throws IOException {
 		switch (item.getType()) {
 		case STATIC_VALUE:
-			return factory.textNode(item.asStaticValue().getValue());
+			generator.writeString(item.asStaticValue().getValue());
+			break;
 		case DERIVED_VALUE:
-			return factory.textNode(getInputString(item.asDerivedValue().getInput()));
+			generator.writeString(getInputString(item.asDerivedValue().getInput()));
+			break;
 		case OBJECT:
-			ObjectNode objectNode = factory.objectNode();
+			generator.writeStartObject();
 
 			if (null != item.asObject().getItems()) {
 				for (Map.Entry<String, JsonItem> entry : item.asObject().getItems().entrySet()) {
-					objectNode.set(entry.getKey(), convertJsonItem(entry.getValue()));
+					generator.writeFieldName(entry.getKey());
+					writeJsonItem(generator, entry.getValue());
 				}
 			}
 
-			return objectNode;
+			generator.writeEndObject();
+			break;
 		case ARRAY:
-			ArrayNode arrayNode = factory.arrayNode();
+			generator.writeStartArray();
 
 			if (null != item.asArray().getItems()) {
 				for (JsonItem nestedItem : item.asArray().getItems()) {
-					arrayNode.add(convertJsonItem(nestedItem));
+					writeJsonItem(generator, nestedItem);
 				}
 			}
 
-			return arrayNode;
+			generator.writeEndArray();
+			break;
 		default:
-			return null;
+			generator.writeNull();
+			break;
 		}
 	}
 
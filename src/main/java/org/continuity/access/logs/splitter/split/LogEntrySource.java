@@ -0,0 +1,35 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+
+/**
+ * Source of parsed access log entries in the order of the logs. Lines that cannot be parsed are
+ * skipped.
+ */
+public interface LogEntrySource extends Closeable {
+
+	/**
+	 * Returns the next entry.
+	 *
+	 * @return The next entry or {@code null} if there are no more entries.
+	 * @throws IOException
+	 *             If the logs cannot be read.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the next entry.
+	 */
+	AccessLogEntry next() throws IOException, InterruptedException;
+
+	/**
+	 * Returns the byte position right after the line of the entry returned last, from which
+	 * reading can be resumed later on.
+	 *
+	 * @return The position or {@code -1} if positions are not supported.
+	 */
+	default long position() {
+		return -1;
+	}
+
+}
@@ -0,0 +1,197 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Arrays;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.AccessLogLineParser;
+
+/**
+ * Finds the position of a timestamp in a plain access logs file ordered by timestamp without
+ * reading the whole file. The file is memory-mapped in regions and searched binary by sampling the
+ * timestamps of the lines following the probed positions. Lines are cut at line feeds only, as
+ * done by the {@link ParallelLogReader}. Lines that cannot be parsed are skipped.
+ */
+public class LogTimeIndex implements Closeable {
+
+	private static final int REGION_SIZE = 1024 * 1024;
+
+	/** Below this range, the lines are scanned one after the other. */
+	private static final long SCAN_THRESHOLD = 8 * 1024;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final AccessLogLineParser parser = new AccessLogLineParser();
+
+	private MappedByteBuffer region;
+
+	private long regionStart = 0;
+
+	private byte[] line = new byte[256];
+
+	private int lineLength = 0;
+
+	private int numProbes = 0;
+
+	public LogTimeIndex(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+	}
+
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of lines parsed so far, which indicates the costs of the search.
+	 *
+	 * @return The number of parsed lines.
+	 */
+	public int getNumProbes() {
+		return numProbes;
+	}
+
+	/**
+	 * Returns the position of the first line with a timestamp at or after the passed one.
+	 *
+	 * @param timestamp
+	 *            The timestamp in milliseconds.
+	 * @return The position of the line or the file size if there is no such line.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public long findFirstAtOrAfter(long timestamp) throws IOException {
+		long low = 0;
+		long high = size;
+
+		// invariant: the line we are looking for starts at or after low
+		while ((high - low) > SCAN_THRESHOLD) {
+			long middle = low + ((high - low) / 2);
+			long lineStart = nextLineStart(middle);
+			long probed = timestampAt(lineStart, high);
+
+			if (probed >= timestamp) {
+				high = middle;
+			} else {
+				low = middle;
+			}
+		}
+
+		long lineStart = nextLineStart(low);
+
+		while (lineStart < size) {
+			long lineEnd = readLine(lineStart);
+			AccessLogEntry entry = parse();
+
+			if ((entry != null) && (entry.getTimestampMillis() >= timestamp)) {
+				return lineStart;
+			}
+
+			lineStart = lineEnd;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Returns the timestamp of the first parseable line starting between the two positions.
+	 * Positions without such a line are considered later than all timestamps.
+	 */
+	private long timestampAt(long lineStart, long limit) throws IOException {
+		while (lineStart < limit) {
+			long lineEnd = readLine(lineStart);
+			AccessLogEntry entry = parse();
+
+			if (entry != null) {
+				return entry.getTimestampMillis();
+			}
+
+			lineStart = lineEnd;
+		}
+
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the start of the first line starting at or after the position, i.e., the position
+	 * after the first line feed at or after the preceding byte.
+	 */
+	private long nextLineStart(long position) throws IOException {
+		if (position == 0) {
+			return 0;
+		}
+
+		for (long i = position - 1; i < size; i++) {
+			if (byteAt(i) == '\n') {
+				return i + 1;
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * Reads the line starting at the position into {@link #line}. A carriage return ends the
+	 * content of the line.
+	 *
+	 * @return The position of the next line.
+	 */
+	private long readLine(long lineStart) throws IOException {
+		long position = lineStart;
+		boolean terminated = false;
+		lineLength = 0;
+
+		while (position < size) {
+			byte b = byteAt(position++);
+
+			if (b == '\n') {
+				break;
+			} else if (b == '\r') {
+				terminated = true;
+			} else if (!terminated) {
+				if (lineLength == line.length) {
+					line = Arrays.copyOf(line, 2 * line.length);
+				}
+
+				line[lineLength++] = b;
+			}
+		}
+
+		return position;
+	}
+
+	private AccessLogEntry parse() {
+		numProbes++;
+
+		try {
+			return parser.parse(new String(line, 0, lineLength, StandardCharsets.UTF_8));
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+
+	private byte byteAt(long position) throws IOException {
+		if ((region == null) || (position < regionStart) || (position >= (regionStart + region.limit()))) {
+			regionStart = position;
+			region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(REGION_SIZE, size - regionStart));
+		}
+
+		return region.get((int) (position - regionStart));
+	}
+
+	@Override
+	public void close() throws IOException {
+		region = null;
+		channel.close();
+	}
+
+}
@@ -0,0 +1,100 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+
+/**
+ * Merges the entries of several sources by timestamp, e.g., the access logs of several nodes
+ * behind a load balancer. Each source is expected to be ordered by timestamp. Entries with equal
+ * timestamps are returned in the order of the sources. <br>
+ * Only the next entry of each source is held, so the read-ahead per source is bounded by the
+ * source itself.
+ */
+public class MergingLogReader implements LogEntrySource {
+
+	private final List<? extends LogEntrySource> sources;
+
+	private final PriorityQueue<Head> heads;
+
+	private boolean initialized = false;
+
+	public MergingLogReader(List<? extends LogEntrySource> sources) {
+		this.sources = sources;
+		this.heads = new PriorityQueue<>(Math.max(sources.size(), 1));
+	}
+
+	@Override
+	public AccessLogEntry next() throws IOException, InterruptedException {
+		if (!initialized) {
+			for (int i = 0; i < sources.size(); i++) {
+				advance(new Head(i, sources.get(i)));
+			}
+
+			initialized = true;
+		}
+
+		Head head = heads.poll();
+
+		if (head == null) {
+			return null;
+		}
+
+		AccessLogEntry entry = head.entry;
+		advance(head);
+
+		return entry;
+	}
+
+	private void advance(Head head) throws IOException, InterruptedException {
+		head.entry = head.source.next();
+
+		if (head.entry != null) {
+			head.timestamp = head.entry.getTimestampMillis();
+			heads.add(head);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+
+		for (LogEntrySource source : sources) {
+			try {
+				source.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static class Head implements Comparable<Head> {
+
+		private final int index;
+
+		private final LogEntrySource source;
+
+		private AccessLogEntry entry;
+
+		private long timestamp;
+
+		private Head(int index, LogEntrySource source) {
+			this.index = index;
+			this.source = source;
+		}
+
+		@Override
+		public int compareTo(Head other) {
+			int result = Long.compare(timestamp, other.timestamp);
+			return result != 0 ? result : Integer.compare(index, other.index);
+		}
+
+	}
+
+}
@@ -0,0 +1,290 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.AccessLogLineParser;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads an access logs file by memory-mapping it in newline-aligned chunks that are parsed in
+ * parallel. The parsed entries are returned in the order of the file together with the
+ * {@link #position()} after their lines.
+ */
+public class ParallelLogReader implements LogEntrySource {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParallelLogReader.class);
+
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
+
+	public static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+	private static final int BOUNDARY_SCAN_SIZE = 8 * 1024;
+
+	private final Path pathToLogs;
+
+	private final int numThreads;
+
+	private final int chunkSize;
+
+	private final ThreadLocal<AccessLogLineParser> parser = ThreadLocal.withInitial(AccessLogLineParser::new);
+
+	private final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+
+	private FileChannel channel;
+
+	private ExecutorService parserPool;
+
+	private long size;
+
+	private long chunkStart;
+
+	private Chunk currentChunk = new Chunk(0);
+
+	private int indexInChunk = 0;
+
+	private long position;
+
+	/**
+	 * Creates a reader that starts at a given position, e.g., to resume a previous read.
+	 *
+	 * @param pathToLogs
+	 *            The access logs file.
+	 * @param numThreads
+	 *            The number of parsing threads.
+	 * @param chunkSize
+	 *            The approximate size of the chunks in bytes.
+	 * @param startPosition
+	 *            The position as returned by {@link #position()}.
+	 */
+	public ParallelLogReader(Path pathToLogs, int numThreads, int chunkSize, long startPosition) {
+		this.pathToLogs = pathToLogs;
+		this.numThreads = numThreads;
+		this.chunkSize = chunkSize;
+		this.chunkStart = startPosition;
+		this.position = startPosition;
+	}
+
+	public ParallelLogReader(Path pathToLogs, int numThreads, int chunkSize) {
+		this(pathToLogs, numThreads, chunkSize, 0);
+	}
+
+	public ParallelLogReader(Path pathToLogs, int numThreads) {
+		this(pathToLogs, numThreads, DEFAULT_CHUNK_SIZE);
+	}
+
+	@Override
+	public AccessLogEntry next() throws IOException, InterruptedException {
+		if (channel == null) {
+			channel = FileChannel.open(pathToLogs, StandardOpenOption.READ);
+			size = channel.size();
+			parserPool = Executors.newFixedThreadPool(numThreads);
+		}
+
+		while (indexInChunk >= currentChunk.entries.size()) {
+			// keep a bounded number of chunks in flight to limit the memory footprint
+			while ((chunkStart < size) && (pending.size() < (2 * numThreads))) {
+				long chunkEnd = findLineStart(chunkStart + Math.min(chunkSize, size - chunkStart));
+				long offset = chunkStart;
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+				pending.add(parserPool.submit(() -> parseChunk(chunk, offset)));
+				chunkStart = chunkEnd;
+			}
+
+			if (pending.isEmpty()) {
+				return null;
+			}
+
+			currentChunk = await(pending.poll());
+			indexInChunk = 0;
+		}
+
+		position = currentChunk.ends[indexInChunk];
+		return currentChunk.entries.get(indexInChunk++);
+	}
+
+	@Override
+	public long position() {
+		return position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (parserPool != null) {
+			parserPool.shutdownNow();
+		}
+
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	private Chunk await(Future<Chunk> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new IOException("Could not parse chunk of " + pathToLogs, e.getCause());
+		}
+	}
+
+	/**
+	 * Returns the position after the next line feed at or after {@code position}, or
+	 * {@code size} if there is none. Line feeds are used as the only cutting point, so that
+	 * {@code \r\n} sequences are never split.
+	 */
+	private long findLineStart(long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+
+			if (read <= 0) {
+				break;
+			}
+
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+
+			position += read;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Parses the lines of a chunk. The lines are delimited in the decoded characters and, in
+	 * parallel, in the raw bytes to determine their positions. As UTF-8 does not use the bytes of
+	 * line terminators in multi-byte sequences, both always find the same lines.
+	 */
+	private Chunk parseChunk(ByteBuffer chunk, long offset) throws CharacterCodingException {
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer chars = decoder.decode(chunk.duplicate());
+		AccessLogLineParser lineParser = parser.get();
+
+		Chunk parsed = new Chunk(chunk.limit() / 128);
+		int length = chars.length();
+		int lineStart = 0;
+		int byteLength = chunk.limit();
+		int byteLineStart = 0;
+
+		while (lineStart < length) {
+			int lineEnd = findLineEnd(chars, lineStart, length);
+			int byteLineEnd = findLineEnd(chunk, byteLineStart, byteLength);
+
+			AccessLogEntry entry = parseLine(lineParser, chars, lineStart, lineEnd);
+
+			// same line terminators as BufferedReader: \n, \r, or \r\n
+			if (((lineEnd + 1) < length) && (chars.get(lineEnd) == '\r') && (chars.get(lineEnd + 1) == '\n')) {
+				lineEnd++;
+				byteLineEnd++;
+			}
+
+			if (entry != null) {
+				parsed.add(entry, offset + Math.min(byteLineEnd + 1, byteLength));
+			}
+
+			lineStart = lineEnd + 1;
+			byteLineStart = byteLineEnd + 1;
+		}
+
+		return parsed;
+	}
+
+	private int findLineEnd(CharBuffer chars, int from, int length) {
+		for (int i = from; i < length; i++) {
+			char c = chars.get(i);
+
+			if ((c == '\n') || (c == '\r')) {
+				return i;
+			}
+		}
+
+		return length;
+	}
+
+	private int findLineEnd(ByteBuffer bytes, int from, int length) {
+		for (int i = from; i < length; i++) {
+			byte b = bytes.get(i);
+
+			if ((b == '\n') || (b == '\r')) {
+				return i;
+			}
+		}
+
+		return length;
+	}
+
+	private AccessLogEntry parseLine(AccessLogLineParser lineParser, CharBuffer chars, int start, int end) {
+		METRICS.increment(Counter.LINES_READ);
+		AccessLogEntry entry;
+
+		try {
+			entry = lineParser.parse(chars, start, end);
+		} catch (ParseException e) {
+			LOGGER.error("Cannot parse date!", e);
+			entry = null;
+		}
+
+		if (entry == null) {
+			METRICS.increment(Counter.PARSE_FAILURES);
+			LOGGER.error("Cannot parse line {}", chars.subSequence(start, end));
+		} else {
+			METRICS.increment(Counter.ENTRIES_PARSED);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Parsed entries with the positions after their lines.
+	 */
+	private static class Chunk {
+
+		private final List<AccessLogEntry> entries;
+
+		private long[] ends;
+
+		private Chunk(int expectedSize) {
+			this.entries = new ArrayList<>(expectedSize);
+			this.ends = new long[Math.max(expectedSize, 16)];
+		}
+
+		private void add(AccessLogEntry entry, long end) {
+			if (entries.size() == ends.length) {
+				ends = Arrays.copyOf(ends, 2 * ends.length);
+			}
+
+			ends[entries.size()] = end;
+			entries.add(entry);
+		}
+
+	}
+
+}
@@ -0,0 +1,218 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.continuity.idpa.application.Application;
+import org.continuity.idpa.application.Endpoint;
+import org.continuity.idpa.application.HttpEndpoint;
+
+/**
+ * Maps request URIs to the {@link HttpEndpoint}s of an {@link Application} like the
+ * {@link org.continuity.commons.idpa.RequestUriMapper}, but uses a segment trie per request method
+ * that is built once. Hence, the costs of a lookup depend on the depth of the path rather than on
+ * the number of endpoints. <br>
+ * As the {@code RequestUriMapper}, it prefers exact matches and otherwise returns the first
+ * endpoint in the order of the application whose path matches with respect to {@code {param}}
+ * segments and trailing {@code {param:*}} segments.
+ */
+public class RequestUriTrie {
+
+	private static final String SLASH = "/";
+
+	private final Map<String, Map<String, Indexed>> exactPerMethod = new HashMap<>();
+
+	private final Map<String, Node> rootPerMethod = new HashMap<>();
+
+	public RequestUriTrie(Application application) {
+		List<Endpoint<?>> endpoints = application.getEndpoints();
+
+		for (int i = 0; i < endpoints.size(); i++) {
+			if (endpoints.get(i) instanceof HttpEndpoint) {
+				add(new Indexed((HttpEndpoint) endpoints.get(i), i));
+			}
+		}
+	}
+
+	private void add(Indexed endpoint) {
+		String method = endpoint.endpoint.getMethod();
+		String normalized = normalize(endpoint.endpoint.getPath());
+
+		exactPerMethod.computeIfAbsent(method, m -> new HashMap<>()).putIfAbsent(normalized, endpoint);
+
+		String[] parts = normalized.split(SLASH);
+		Node node = rootPerMethod.computeIfAbsent(method, m -> new Node());
+		boolean catchAll = (parts.length > 0) && isCatchAll(parts[parts.length - 1]);
+		int depth = catchAll ? parts.length - 1 : parts.length;
+
+		for (int i = 0; i < depth; i++) {
+			node = node.child(parts[i]);
+		}
+
+		if (catchAll) {
+			node.catchAll = Indexed.first(node.catchAll, endpoint);
+		} else {
+			node.terminal = Indexed.first(node.terminal, endpoint);
+		}
+	}
+
+	/**
+	 * Maps the passed path and method to an endpoint.
+	 *
+	 * @param path
+	 *            The request path without query string.
+	 * @param method
+	 *            The request method.
+	 * @return The matching endpoint or {@code null} if there is none.
+	 */
+	public HttpEndpoint map(String path, String method) {
+		Map<String, Indexed> exact = exactPerMethod.get(method);
+
+		if (exact == null) {
+			return null;
+		}
+
+		Indexed found = exact.get(normalize(path));
+
+		if (found == null) {
+			found = find(rootPerMethod.get(method), segments(path), 0, null);
+		}
+
+		return found == null ? null : found.endpoint;
+	}
+
+	private Indexed find(Node node, String[] segments, int depth, Indexed best) {
+		if (depth < segments.length) {
+			best = Indexed.first(best, node.catchAll);
+
+			Node literal = node.literals == null ? null : node.literals.get(segments[depth]);
+
+			if (literal != null) {
+				best = find(literal, segments, depth + 1, best);
+			}
+
+			if (node.wildcard != null) {
+				best = find(node.wildcard, segments, depth + 1, best);
+			}
+
+			return best;
+		} else {
+			return Indexed.first(best, node.terminal);
+		}
+	}
+
+	/**
+	 * Same segments as {@code normalize(path).split("/")}, i.e., with a leading empty segment and
+	 * without trailing empty segments.
+	 */
+	private String[] segments(String path) {
+		int end = path.length();
+
+		while ((end > 0) && (path.charAt(end - 1) == '/')) {
+			end--;
+		}
+
+		if (end == 0) {
+			return new String[0];
+		}
+
+		int start = path.startsWith(SLASH) ? 1 : 0;
+		int count = 2;
+
+		for (int i = start; i < end; i++) {
+			if (path.charAt(i) == '/') {
+				count++;
+			}
+		}
+
+		String[] segments = new String[count];
+		segments[0] = "";
+		int segmentStart = start;
+
+		for (int s = 1; s < count; s++) {
+			int segmentEnd = path.indexOf('/', segmentStart);
+
+			if ((segmentEnd < 0) || (segmentEnd > end)) {
+				segmentEnd = end;
+			}
+
+			segments[s] = path.substring(segmentStart, segmentEnd);
+			segmentStart = segmentEnd + 1;
+		}
+
+		return segments;
+	}
+
+	private static String normalize(String uri) {
+		if (!uri.startsWith(SLASH)) {
+			uri = SLASH + uri;
+		}
+
+		if (!uri.endsWith(SLASH)) {
+			uri = uri + SLASH;
+		}
+
+		return uri;
+	}
+
+	private static boolean isWildcard(String part) {
+		return part.startsWith("{") && part.endsWith("}") && (part.length() >= 2);
+	}
+
+	private static boolean isCatchAll(String part) {
+		return isWildcard(part) && (part.length() >= 4) && part.endsWith(":*}");
+	}
+
+	private static class Node {
+
+		private Map<String, Node> literals;
+
+		private Node wildcard;
+
+		private Indexed terminal;
+
+		private Indexed catchAll;
+
+		private Node child(String part) {
+			if (isWildcard(part)) {
+				if (wildcard == null) {
+					wildcard = new Node();
+				}
+
+				return wildcard;
+			} else {
+				if (literals == null) {
+					literals = new HashMap<>();
+				}
+
+				return literals.computeIfAbsent(part, p -> new Node());
+			}
+		}
+
+	}
+
+	private static class Indexed {
+
+		private final HttpEndpoint endpoint;
+
+		private final int index;
+
+		private Indexed(HttpEndpoint endpoint, int index) {
+			this.endpoint = endpoint;
+			this.index = index;
+		}
+
+		private static Indexed first(Indexed a, Indexed b) {
+			if (a == null) {
+				return b;
+			} else if ((b == null) || (a.index <= b.index)) {
+				return a;
+			} else {
+				return b;
+			}
+		}
+
+	}
+
+}
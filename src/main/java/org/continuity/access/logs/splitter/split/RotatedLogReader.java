@@ -0,0 +1,295 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a set of rotated access logs files, e.g., {@code access.log.2.gz},
+ * {@code access.log.1}, and {@code access.log}, oldest first as one logical stream. Compressed
+ * files are read with a {@link StreamingLogReader}. Plain files are read with a
+ * {@link ParallelLogReader} if more than one parsing thread is requested. <br>
+ * If a time window is set, only its entries are returned. Plain files are only read in the range
+ * found by a {@link LogTimeIndex}, files outside of the window are skipped entirely. Compressed
+ * files cannot be searched and are read until the window has passed.
+ */
+public class RotatedLogReader implements LogEntrySource {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RotatedLogReader.class);
+
+	private static final Pattern ROTATION_PATTERN = Pattern.compile("(.*?)(?:\\.(\\d+))?(?:\\.gz)?");
+
+	private static final String GLOB_CHARS = "*?[{";
+
+	private static final int MIN_DATE_DIGITS = 8;
+
+	private final List<Path> files;
+
+	private final int parsingThreads;
+
+	private int fileIndex = -1;
+
+	private LogEntrySource current;
+
+	private long startPosition = 0;
+
+	private Path positionFile;
+
+	private long position = 0;
+
+	private long windowFrom = Long.MIN_VALUE;
+
+	private long windowTo = Long.MAX_VALUE;
+
+	public RotatedLogReader(List<Path> files, int parsingThreads) {
+		this.files = files;
+		this.parsingThreads = parsingThreads;
+	}
+
+	/**
+	 * Creates a reader for all access logs files matching the path.
+	 *
+	 * @param pathToLogs
+	 *            A single file, a directory, or a glob pattern such as {@code /var/log/access.log*}.
+	 * @param parsingThreads
+	 *            The number of threads to use for parsing plain files.
+	 * @return The reader.
+	 * @throws IOException
+	 *             If the directory cannot be listed.
+	 */
+	public static RotatedLogReader of(Path pathToLogs, int parsingThreads) throws IOException {
+		List<Path> files = resolveFiles(pathToLogs);
+		LOGGER.info("Reading access logs files {}", files);
+		return new RotatedLogReader(files, parsingThreads);
+	}
+
+	/**
+	 * Resolves the access logs files, ordered oldest first. Files with a higher rotation index are
+	 * considered older and files without an index are the newest ones. Indices of at least
+	 * {@value #MIN_DATE_DIGITS} digits are date stamps such as {@code access.log.2024010112}, for
+	 * which higher ones are newer. A directory needs to hold the files of a single base name, as
+	 * other logs, e.g., {@code error.log}, must not be mixed in. Otherwise, a glob pattern is
+	 * required.
+	 *
+	 * @param pathToLogs
+	 *            A single file, a directory, or a glob pattern for the file names.
+	 * @return The ordered files.
+	 * @throws IOException
+	 *             If the directory cannot be listed.
+	 */
+	public static List<Path> resolveFiles(Path pathToLogs) throws IOException {
+		List<Path> files = new ArrayList<>();
+		String filename = pathToLogs.getFileName() == null ? "" : pathToLogs.getFileName().toString();
+
+		if (Files.isDirectory(pathToLogs)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(pathToLogs, p -> Files.isRegularFile(p) && !p.getFileName().toString().startsWith("."))) {
+				stream.forEach(files::add);
+			}
+
+			Set<String> baseNames = files.stream().map(RotatedLogReader::baseName).collect(Collectors.toCollection(TreeSet::new));
+
+			if (baseNames.size() > 1) {
+				throw new IllegalArgumentException("The directory " + pathToLogs + " holds the files of several logs " + baseNames + "! Please pass a glob pattern such as "
+						+ pathToLogs.resolve(baseNames.iterator().next() + "*") + " instead.");
+			}
+		} else if (filename.chars().anyMatch(c -> GLOB_CHARS.indexOf(c) >= 0)) {
+			Path dir = pathToLogs.toAbsolutePath().getParent();
+			PathMatcher matcher = dir.getFileSystem().getPathMatcher("glob:" + filename);
+
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, p -> Files.isRegularFile(p) && matcher.matches(p.getFileName()))) {
+				stream.forEach(files::add);
+			}
+		} else {
+			files.add(pathToLogs);
+		}
+
+		files.sort(Comparator.comparingInt(RotatedLogReader::rotationKind).thenComparing(RotatedLogReader::signedRotationIndex).thenComparing(p -> p.getFileName().toString()));
+
+		return files;
+	}
+
+	private static String baseName(Path file) {
+		Matcher matcher = ROTATION_PATTERN.matcher(file.getFileName().toString());
+		return matcher.matches() ? matcher.group(1) : file.getFileName().toString();
+	}
+
+	private static String rotationIndex(Path file) {
+		Matcher matcher = ROTATION_PATTERN.matcher(file.getFileName().toString());
+		return matcher.matches() ? matcher.group(2) : null;
+	}
+
+	/**
+	 * Date stamps come first, then rotation indices, then the file without an index.
+	 */
+	private static int rotationKind(Path file) {
+		String index = rotationIndex(file);
+
+		if (index == null) {
+			return 2;
+		} else {
+			return index.length() >= MIN_DATE_DIGITS ? 0 : 1;
+		}
+	}
+
+	/**
+	 * Returns the index such that the older file is less, i.e., negates rotation indices. Indices
+	 * of any length are supported.
+	 */
+	private static BigInteger signedRotationIndex(Path file) {
+		String index = rotationIndex(file);
+
+		if (index == null) {
+			return BigInteger.ZERO;
+		}
+
+		BigInteger value = new BigInteger(index);
+		return index.length() >= MIN_DATE_DIGITS ? value : value.negate();
+	}
+
+	/**
+	 * Restricts the entries to a time window. The files are expected to be ordered by timestamp,
+	 * apart from a disorder of up to {@link TimeWindowReader#DISORDER_TOLERANCE}. Needs to be
+	 * called before reading the first entry.
+	 *
+	 * @param from
+	 *            The start of the window in milliseconds (inclusive). {@link Long#MIN_VALUE} for
+	 *            no start.
+	 * @param to
+	 *            The end of the window in milliseconds (exclusive). {@link Long#MAX_VALUE} for no
+	 *            end.
+	 */
+	public void setTimeWindow(long from, long to) {
+		this.windowFrom = from;
+		this.windowTo = to;
+	}
+
+	/**
+	 * Lets the reader continue at a position that has been returned by {@link #positionFile()}
+	 * and {@link #position()} before. Needs to be called before reading the first entry.
+	 *
+	 * @param file
+	 *            The file to continue with.
+	 * @param position
+	 *            The position in that file.
+	 * @throws IOException
+	 *             If the file is not part of the access logs.
+	 */
+	public void resumeAt(Path file, long position) throws IOException {
+		int index = files.indexOf(file);
+
+		if (index < 0) {
+			throw new IOException("Cannot resume at " + file + ", because it is not part of " + files);
+		}
+
+		this.fileIndex = index - 1;
+		this.startPosition = position;
+		this.positionFile = file;
+		this.position = position;
+	}
+
+	/**
+	 * Returns the file of the entry returned last.
+	 *
+	 * @return The file or {@code null} if no entry has been read, yet.
+	 */
+	public Path positionFile() {
+		return positionFile;
+	}
+
+	@Override
+	public long position() {
+		return position;
+	}
+
+	@Override
+	public AccessLogEntry next() throws IOException, InterruptedException {
+		while (true) {
+			if (current != null) {
+				AccessLogEntry entry = current.next();
+
+				if (entry != null) {
+					positionFile = files.get(fileIndex);
+					position = current.position();
+					return entry;
+				}
+
+				current.close();
+				current = null;
+			}
+
+			if ((fileIndex + 1) >= files.size()) {
+				return null;
+			}
+
+			current = open(files.get(++fileIndex), startPosition);
+			startPosition = 0;
+		}
+	}
+
+	/**
+	 * Opens a reader for the file.
+	 *
+	 * @return The reader or {@code null} if the file has no entries in the time window.
+	 */
+	private LogEntrySource open(Path file, long startPosition) throws IOException {
+		if ((windowFrom == Long.MIN_VALUE) && (windowTo == Long.MAX_VALUE)) {
+			return openRange(file, startPosition);
+		} else if (StreamingLogReader.isCompressed(file)) {
+			return new TimeWindowReader(openRange(file, startPosition), windowFrom, windowTo, -1);
+		}
+
+		long windowStart;
+		long windowEnd;
+
+		try (LogTimeIndex index = new LogTimeIndex(file)) {
+			windowStart = windowFrom == Long.MIN_VALUE ? 0 : index.findFirstAtOrAfter(windowFrom - TimeWindowReader.DISORDER_TOLERANCE);
+			windowEnd = windowTo == Long.MAX_VALUE ? index.size() : index.findFirstAtOrAfter(windowTo + TimeWindowReader.DISORDER_TOLERANCE);
+
+			LOGGER.info("The time window covers bytes {} to {} of {} ({} lines probed).", windowStart, windowEnd, file, index.getNumProbes());
+		}
+
+		if (Math.max(windowStart, startPosition) >= windowEnd) {
+			LOGGER.info("Skipping {}, as it has no entries in the time window.", file);
+			return null;
+		}
+
+		return new TimeWindowReader(openRange(file, Math.max(windowStart, startPosition)), windowFrom, windowTo, windowEnd);
+	}
+
+	private LogEntrySource openRange(Path file, long startPosition) {
+		if (startPosition > 0) {
+			LOGGER.info("Reading {} from position {}...", file, startPosition);
+		} else {
+			LOGGER.info("Reading {}...", file);
+		}
+
+		if ((parsingThreads > 1) && !StreamingLogReader.isCompressed(file)) {
+			return new ParallelLogReader(file, parsingThreads, ParallelLogReader.DEFAULT_CHUNK_SIZE, startPosition);
+		} else {
+			return new StreamingLogReader(file, startPosition);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (current != null) {
+			current.close();
+		}
+	}
+
+}
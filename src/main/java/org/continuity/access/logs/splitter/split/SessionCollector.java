@@ -1,26 +1,39 @@
 package org.continuity.access.logs.splitter.split;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.Date;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.format.SessionArchiveWriter;
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.format.SessionOutputPool;
+import org.continuity.access.logs.splitter.format.SessionWriter;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class SessionCollector implements Runnable {
+/**
+ * Holds the session state of one thread ID and writes its sessions to files of a
+ * {@link SessionFormat}, CSV by default. It does not run
+ * on its own, but is driven by the {@link SessionCollectorShard} the thread ID is assigned to.
+ * <br>
+ * If an archive is set, each session is buffered in memory and appended to the archive as a whole
+ * once it is finished. Otherwise, the session files can be written through a shared
+ * {@link SessionOutputPool}.
+ */
+public class SessionCollector {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(SessionCollector.class);
 
-	private static final AccessLogEntry STOP_ENTRY = new AccessLogEntry("STOP", new Date(0), "STOP", "STOP");
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
 
 	private static final long MAX_DELAY_IN_SESSION = 30 * 60 * 1000;
 
@@ -28,70 +41,231 @@ public class SessionCollector implements Runnable {
 
 	private static final String FILENAME_PREFIX = "session-";
 
-	private static final String FILENAME_EXT = ".csv";
-
 	private static final Set<String> POST_PUT = Stream.of("POST", "PUT").collect(Collectors.toSet());
 
-	private final BlockingQueue<AccessLogEntry> queue = new LinkedBlockingQueue<>();
-
 	private final String threadId;
 
 	private final Path outputDir;
 
 	private final AccessLogsAnnotator annotator;
 
+	private final SessionFormat format;
+
 	private AccessLogEntry lastEntry;
 
-	private BufferedWriter writer;
+	private SessionWriter writer;
+
+	private SessionArchiveWriter archive;
+
+	private SessionOutputPool outputPool;
+
+	private SessionBuffer sessionBuffer;
 
 	private String filename;
 
 	private int sessionCounter = 1;
 
-	public SessionCollector(String threadId, Path outputDir, AccessLogsAnnotator annotator) {
+	public SessionCollector(String threadId, Path outputDir, AccessLogsAnnotator annotator, SessionFormat format) {
 		this.threadId = threadId;
 		this.outputDir = outputDir;
 		this.annotator = annotator;
+		this.format = format;
+	}
+
+	public SessionCollector(String threadId, Path outputDir, AccessLogsAnnotator annotator) {
+		this(threadId, outputDir, annotator, SessionFormat.CSV);
+	}
+
+	/**
+	 * Restores a collector from a checkpoint. An open session file is truncated to the size at
+	 * the checkpoint and continued.
+	 *
+	 * @param state
+	 *            The state at the checkpoint.
+	 * @param outputDir
+	 *            The directory holding the session files.
+	 * @param annotator
+	 *            The annotator to be applied to the entries.
+	 * @param format
+	 *            The format of the session files. Needs to be the one of the open session file.
+	 * @param outputPool
+	 *            The pool to write the session files through, including the open one. Can be
+	 *            {@code null}.
+	 * @throws IOException
+	 *             If the open session file cannot be restored.
+	 */
+	public SessionCollector(SplitCheckpoint.CollectorState state, Path outputDir, AccessLogsAnnotator annotator, SessionFormat format, SessionOutputPool outputPool) throws IOException {
+		this(state.getThreadId(), outputDir, annotator, format);
+		this.sessionCounter = state.getSessionCounter();
+		this.outputPool = outputPool;
+
+		if (state.getFilename() != null) {
+			filename = state.getFilename();
+			Path file = outputDir.resolve(filename);
+
+			if (SessionFormat.forFile(file) != format) {
+				throw new IOException("The session file " + file + " has not been written in the " + format + " format!");
+			}
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.truncate(state.getFileSize());
+			}
+
+			writer = openWriter(file, true);
+
+			lastEntry = new AccessLogEntry(threadId, state.getLastTimestamp(), state.getLastMethod(), state.getLastPath());
+			lastEntry.setContentType(state.getLastContentType());
+			lastEntry.setBody(state.getLastBody());
+		}
+	}
+
+	/**
+	 * Sets the archive to append the sessions to instead of writing one file per session. Needs
+	 * to be called before the first entry is processed. Such a collector cannot be checkpointed.
+	 * The open session is buffered in memory until it is finished.
+	 *
+	 * @param archive
+	 *            The archive.
+	 */
+	public void setArchive(SessionArchiveWriter archive) {
+		this.archive = archive;
 	}
 
-	public void offer(AccessLogEntry entry) {
-		queue.offer(entry);
+	/**
+	 * Sets the pool to write the session files through. Applies to the sessions started
+	 * afterwards.
+	 *
+	 * @param outputPool
+	 *            The pool.
+	 */
+	public void setOutputPool(SessionOutputPool outputPool) {
+		this.outputPool = outputPool;
 	}
 
-	public void stop() {
-		queue.offer(STOP_ENTRY);
+	public String getThreadId() {
+		return threadId;
 	}
 
-	@Override
-	public void run() {
-		initFile();
+	/**
+	 * Gets the number of the next session, which is part of its file name.
+	 *
+	 * @return The session counter.
+	 */
+	public int getSessionCounter() {
+		return sessionCounter;
+	}
 
-		while (true) {
-			AccessLogEntry logEntry;
+	/**
+	 * Continues the numbering of the sessions of an evicted collector, so that no session file is
+	 * overwritten.
+	 *
+	 * @param sessionCounter
+	 *            The number of the next session.
+	 */
+	public void setSessionCounter(int sessionCounter) {
+		this.sessionCounter = sessionCounter;
+	}
 
+	/**
+	 * Annotates the entry and adds it to the current session. Entries that cannot be annotated are
+	 * ignored.
+	 *
+	 * @param logEntry
+	 *            The next entry of the thread.
+	 */
+	public void process(AccessLogEntry logEntry) {
+		long start = System.nanoTime();
+		AccessLogEntry annotated = annotator.annotateLogEntry(logEntry);
+		METRICS.getAnnotationLatency().record(System.nanoTime() - start);
+
+		if (annotated != null) {
+			processLogEntry(annotated);
+		}
+	}
+
+	/**
+	 * Writes the pending entry and closes the current session file. A subsequent entry starts a
+	 * new session.
+	 */
+	public void finish() {
+		if (lastEntry != null) {
+			lastEntry.setDelay(WAIT_TIME_BETWEEN_SESSIONS);
+			writeLastEntry();
+			lastEntry = null;
+		}
+
+		if (writer != null) {
+			finishFile();
+			writer = null;
+		}
+	}
+
+	/**
+	 * Flushes the open session file. If an output pool is set, the file is written
+	 * asynchronously, so the pool needs to be synchronized to wait for it.
+	 */
+	public void flush() {
+		if (writer != null) {
 			try {
-				logEntry = queue.take();
-			} catch (InterruptedException e) {
-				LOGGER.error("Interrupted!", e);
-				continue;
+				writer.flush();
+			} catch (IOException e) {
+				LOGGER.error("Could not flush the writer!", e);
 			}
+		}
+	}
 
-			if (STOP_ENTRY.equals(logEntry)) {
-				break;
-			} else {
-				processLogEntry(annotator.annotateLogEntry(logEntry));
+	/**
+	 * Flushes the open session file and returns the state, from which the collector can be
+	 * restored. If an output pool is set, {@link #flush()} and {@link SessionOutputPool#sync()}
+	 * need to be called before, so that the file holds all entries.
+	 *
+	 * @return The current state.
+	 */
+	public SplitCheckpoint.CollectorState checkpoint() {
+		SplitCheckpoint.CollectorState state = new SplitCheckpoint.CollectorState();
+		state.setThreadId(threadId);
+		state.setSessionCounter(sessionCounter);
+
+		if (writer != null) {
+			try {
+				writer.flush();
+				state.setFileSize(Files.size(outputDir.resolve(filename)));
+			} catch (IOException e) {
+				LOGGER.error("Could not flush the writer!", e);
 			}
+
+			state.setFilename(filename);
+			state.setLastTimestamp(lastEntry.getTimestampMillis());
+			state.setLastMethod(lastEntry.getRequestMethod());
+			state.setLastPath(lastEntry.getPath());
+			state.setLastContentType(lastEntry.getContentType());
+			state.setLastBody(lastEntry.getBody());
 		}
 
-		lastEntry.setDelay(WAIT_TIME_BETWEEN_SESSIONS);
-		writeLastEntry();
-		finishFile();
+		return state;
+	}
+
+	/**
+	 * Checks whether the current session cannot be continued anymore, because the log time has
+	 * advanced too far since the last entry of the thread, or whether there is no open session at
+	 * all.
+	 *
+	 * @param watermark
+	 *            The latest timestamp seen in the logs.
+	 * @return {@code true} if the session is to be finished and the collector can be evicted.
+	 */
+	public boolean isIdle(long watermark) {
+		return (lastEntry == null) || ((watermark - lastEntry.getTimestampMillis()) > MAX_DELAY_IN_SESSION);
 	}
 
 	private void processLogEntry(AccessLogEntry logEntry) {
 		// LOGGER.debug("Processing entry {}", logEntry);
 
-		long delay = lastEntry == null ? 0 : logEntry.getTimestamp().getTime() - lastEntry.getTimestamp().getTime();
+		if (writer == null) {
+			initFile();
+		}
+
+		long delay = lastEntry == null ? 0 : logEntry.getTimestampMillis() - lastEntry.getTimestampMillis();
 
 		if ((lastEntry != null)) {
 			lastEntry.setDelay(Math.min(delay, WAIT_TIME_BETWEEN_SESSIONS));
@@ -108,45 +282,69 @@ public class SessionCollector implements Runnable {
 	}
 
 	private void initFile() {
-		filename = new StringBuilder().append(FILENAME_PREFIX).append(threadId.hashCode()).append("-").append(sessionCounter++).append(FILENAME_EXT).toString();
+		filename = new StringBuilder().append(FILENAME_PREFIX).append(threadId.hashCode()).append("-").append(sessionCounter++).append(format.getExtension()).toString();
 
-		LOGGER.info("Writing session of thread {} to {}", threadId, filename);
+		LOGGER.debug("Writing session of thread {} to {}", threadId, filename);
+		METRICS.increment(Counter.SESSIONS_WRITTEN);
 
 		try {
-			writer = Files.newBufferedWriter(outputDir.resolve(filename), StandardOpenOption.CREATE);
+			if (archive == null) {
+				// a resumed split might overwrite a session file that has been written after the checkpoint
+				writer = openWriter(outputDir.resolve(filename), false);
+			} else {
+				sessionBuffer = new SessionBuffer();
+				writer = format.newWriter(sessionBuffer);
+				METRICS.increment(Counter.OPEN_WRITERS);
+			}
 		} catch (IOException e) {
 			LOGGER.error("Could not initialize file!", e);
 		}
+	}
 
-		try {
-			writer.write(AccessLogEntry.HEADER);
-			writer.newLine();
-		} catch (IOException e) {
-			LOGGER.error("Could not write CSV file header!", e);
-		}
+	private SessionWriter openWriter(Path file, boolean append) throws IOException {
+		SessionWriter newWriter = outputPool == null ? format.openWriter(file, append) : format.openWriter(outputPool, file, append);
+		METRICS.increment(Counter.OPEN_WRITERS);
+		return newWriter;
 	}
 
 	private void finishFile() {
 		try {
 			writer.close();
+
+			if (archive != null) {
+				archive.append(filename, sessionBuffer.getBuffer(), sessionBuffer.size());
+				sessionBuffer = null;
+			}
 		} catch (IOException e) {
 			LOGGER.error("Could not close the writer!", e);
 		}
+
+		METRICS.decrement(Counter.OPEN_WRITERS);
 	}
 
 	private void writeLastEntry() {
 		if (lastEntry != null) {
-			if (POST_PUT.contains(lastEntry.getRequestMethod())) {
-				LOGGER.info("{} {} is contained in {}.", lastEntry.getRequestMethod(), lastEntry.getPath(), filename);
+			if (LOGGER.isDebugEnabled() && POST_PUT.contains(lastEntry.getRequestMethod())) {
+				LOGGER.debug("{} {} is contained in {}.", lastEntry.getRequestMethod(), lastEntry.getPath(), filename);
 			}
 
 			try {
-				writer.write(lastEntry.toString());
-				writer.newLine();
+				writer.write(lastEntry);
 			} catch (IOException e) {
-				LOGGER.error("Could not write CSV file row!", e);
+				LOGGER.error("Could not write session entry!", e);
 			}
 		}
 	}
 
+	/**
+	 * Gives access to the buffered bytes without copying them.
+	 */
+	private static class SessionBuffer extends ByteArrayOutputStream {
+
+		private byte[] getBuffer() {
+			return buf;
+		}
+
+	}
+
 }
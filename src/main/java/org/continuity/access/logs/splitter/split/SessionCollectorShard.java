@@ -0,0 +1,340 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.format.SessionArchiveWriter;
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.format.SessionOutputPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Worker processing the entries of all thread IDs that are routed to it. The per-thread state is
+ * held in one {@link SessionCollector} per thread ID, so the number of workers does not depend
+ * on the number of thread IDs. Collectors of thread IDs that have been idle for too long in log
+ * time are finished and evicted. Only their session counters are kept, so that a thread ID
+ * reappearing later on continues with the next session number. Hence, the number of live
+ * collectors and open files depends on the number of concurrently active thread IDs. <br>
+ * The kept session counters are bounded, too. If there are too many, the ones evicted first are
+ * dropped and the session numbers of all thread IDs seen afterwards start above the dropped
+ * counters, so that no session file can be overwritten. <br>
+ * The entries are handed over from the dispatching thread in batches via an
+ * {@link EntryRingBuffer}. All methods but {@link #run()}, {@link #getQueueSize()}, and
+ * {@link #getNumCollectors()} need to be called from that thread.
+ */
+public class SessionCollectorShard implements Runnable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SessionCollectorShard.class);
+
+	private static final AccessLogEntry STOP_ENTRY = new AccessLogEntry("STOP", 0, "STOP", "STOP");
+
+	/** Bounds the entries held on the heap. The dispatching thread waits if the queue is full. */
+	private static final int QUEUE_CAPACITY = 16 * 1024;
+
+	private static final int BATCH_SIZE = 256;
+
+	public static final int DEFAULT_MAX_EVICTED_THREADS = 64 * 1024;
+
+	private final EntryRingBuffer queue = new EntryRingBuffer(QUEUE_CAPACITY, BATCH_SIZE);
+
+	private final Map<String, SessionCollector> collectorPerThread = new HashMap<>();
+
+	/** Iterates the thread ID evicted first first. */
+	private final Map<String, Integer> sessionCounterPerEvictedThread = new LinkedHashMap<>();
+
+	private int maxEvictedThreads = DEFAULT_MAX_EVICTED_THREADS;
+
+	/** Exceeds the session counters of all dropped thread IDs. */
+	private int minSessionCounter = 1;
+
+	private volatile int numCollectors = 0;
+
+	private final Path outputDir;
+
+	private final AccessLogsAnnotator annotator;
+
+	private final SessionFormat format;
+
+	private SessionArchiveWriter archive;
+
+	private SessionOutputPool outputPool;
+
+	public SessionCollectorShard(Path outputDir, AccessLogsAnnotator annotator, SessionFormat format) {
+		this.outputDir = outputDir;
+		this.annotator = annotator;
+		this.format = format;
+	}
+
+	public SessionCollectorShard(Path outputDir, AccessLogsAnnotator annotator) {
+		this(outputDir, annotator, SessionFormat.CSV);
+	}
+
+	/**
+	 * Sets the archive the sessions of all collectors are appended to. Needs to be called before
+	 * the shard is started.
+	 *
+	 * @param archive
+	 *            The archive.
+	 */
+	public void setArchive(SessionArchiveWriter archive) {
+		this.archive = archive;
+	}
+
+	/**
+	 * Sets the pool the session files of all collectors are written through. Needs to be called
+	 * before the shard is started or any collector is restored.
+	 *
+	 * @param outputPool
+	 *            The pool.
+	 */
+	public void setOutputPool(SessionOutputPool outputPool) {
+		this.outputPool = outputPool;
+	}
+
+	/**
+	 * Sets the maximum number of session counters of evicted thread IDs to be kept. Defaults to
+	 * {@link #DEFAULT_MAX_EVICTED_THREADS}. Needs to be called before the shard is started.
+	 *
+	 * @param maxEvictedThreads
+	 *            The number of session counters.
+	 */
+	public void setMaxEvictedThreads(int maxEvictedThreads) {
+		if (maxEvictedThreads < 0) {
+			throw new IllegalArgumentException("The maximum number of evicted thread IDs must not be negative, but was " + maxEvictedThreads + "!");
+		}
+
+		this.maxEvictedThreads = maxEvictedThreads;
+	}
+
+	/**
+	 * Queues an entry. It is processed once a batch is complete or {@link #flush()} is called.
+	 *
+	 * @param entry
+	 *            The entry.
+	 */
+	public void offer(AccessLogEntry entry) {
+		queue.offer(entry);
+	}
+
+	/**
+	 * Passes the queued entries to the collectors without waiting for a batch to be complete.
+	 */
+	public void flush() {
+		queue.flush();
+	}
+
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	public int getNumCollectors() {
+		return numCollectors;
+	}
+
+	public void stop() {
+		offerAndFlush(STOP_ENTRY);
+	}
+
+	/**
+	 * Restores the state of a thread ID from a checkpoint. Thread IDs without an open session are
+	 * only restored with their session counters. Needs to be called before the shard is started
+	 * and after {@link #restoreMinSessionCounter(int)}.
+	 *
+	 * @param state
+	 *            The state at the checkpoint.
+	 * @throws IOException
+	 *             If the open session file cannot be restored.
+	 */
+	public void restore(SplitCheckpoint.CollectorState state) throws IOException {
+		if (state.getFilename() == null) {
+			evicted(state.getThreadId(), state.getSessionCounter());
+		} else {
+			SessionCollector collector = new SessionCollector(state, outputDir, annotator, format, outputPool);
+			collectorPerThread.put(collector.getThreadId(), collector);
+			numCollectors = collectorPerThread.size();
+		}
+	}
+
+	/**
+	 * Restores the session counter the thread IDs without a kept session counter start with.
+	 * Needs to be called before the shard is started.
+	 *
+	 * @param minSessionCounter
+	 *            The counter of the checkpoint.
+	 */
+	public void restoreMinSessionCounter(int minSessionCounter) {
+		this.minSessionCounter = Math.max(this.minSessionCounter, minSessionCounter);
+	}
+
+	/**
+	 * Passes the state of the shard to the callback once all entries offered before have been
+	 * processed. Evicted collectors are included with their session counters only.
+	 *
+	 * @param callback
+	 *            Receives the state.
+	 */
+	public void checkpoint(Consumer<SplitCheckpoint.ShardState> callback) {
+		offerAndFlush(new CheckpointRequest(callback));
+	}
+
+	/**
+	 * Finishes the sessions of all thread IDs that have been idle for too long at the passed log
+	 * time and evicts their collectors. As the watermark is queued behind the entries offered
+	 * before, no pending entry can continue such a session.
+	 *
+	 * @param watermark
+	 *            The latest timestamp seen in the logs.
+	 */
+	public void advanceWatermark(long watermark) {
+		offerAndFlush(new Watermark(watermark));
+	}
+
+	private void offerAndFlush(AccessLogEntry entry) {
+		queue.offer(entry);
+		queue.flush();
+	}
+
+	@Override
+	public void run() {
+		AccessLogEntry[] batch = new AccessLogEntry[BATCH_SIZE];
+		boolean stopped = false;
+
+		while (!stopped) {
+			int size = queue.drainTo(batch);
+
+			for (int i = 0; i < size; i++) {
+				AccessLogEntry logEntry = batch[i];
+				batch[i] = null;
+
+				if (STOP_ENTRY.equals(logEntry)) {
+					stopped = true;
+					break;
+				} else if (logEntry instanceof CheckpointRequest) {
+					((CheckpointRequest) logEntry).callback.accept(checkpointCollectors());
+				} else if (logEntry instanceof Watermark) {
+					evictIdleCollectors(logEntry.getTimestampMillis());
+				} else {
+					collectorForThread(logEntry.getThreadId()).process(logEntry);
+				}
+			}
+		}
+
+		collectorPerThread.values().forEach(SessionCollector::finish);
+		collectorPerThread.clear();
+		sessionCounterPerEvictedThread.clear();
+		numCollectors = 0;
+	}
+
+	private SplitCheckpoint.ShardState checkpointCollectors() {
+		if (outputPool != null) {
+			// the file sizes are only correct once the pool has written all pending chunks
+			collectorPerThread.values().forEach(SessionCollector::flush);
+
+			try {
+				outputPool.sync();
+			} catch (IOException e) {
+				LOGGER.error("Could not synchronize the session output!", e);
+			}
+		}
+
+		// the evicted thread IDs come first and in order, so that the same ones are dropped after resuming
+		List<SplitCheckpoint.CollectorState> states = new ArrayList<>();
+
+		sessionCounterPerEvictedThread.forEach((threadId, sessionCounter) -> {
+			SplitCheckpoint.CollectorState state = new SplitCheckpoint.CollectorState();
+			state.setThreadId(threadId);
+			state.setSessionCounter(sessionCounter);
+			states.add(state);
+		});
+
+		collectorPerThread.values().stream().map(SessionCollector::checkpoint).forEach(states::add);
+
+		SplitCheckpoint.ShardState state = new SplitCheckpoint.ShardState();
+		state.setCollectors(states);
+		state.setMinSessionCounter(minSessionCounter);
+		return state;
+	}
+
+	private void evictIdleCollectors(long watermark) {
+		Iterator<SessionCollector> iterator = collectorPerThread.values().iterator();
+
+		while (iterator.hasNext()) {
+			SessionCollector collector = iterator.next();
+
+			if (collector.isIdle(watermark)) {
+				collector.finish();
+				evicted(collector.getThreadId(), collector.getSessionCounter());
+				iterator.remove();
+			}
+		}
+
+		numCollectors = collectorPerThread.size();
+	}
+
+	/**
+	 * Keeps the session counter of an evicted thread ID. If there are too many, the one evicted
+	 * first is dropped.
+	 */
+	private void evicted(String threadId, int sessionCounter) {
+		sessionCounterPerEvictedThread.put(threadId, sessionCounter);
+
+		if (sessionCounterPerEvictedThread.size() > maxEvictedThreads) {
+			Iterator<Integer> eldest = sessionCounterPerEvictedThread.values().iterator();
+			minSessionCounter = Math.max(minSessionCounter, eldest.next());
+			eldest.remove();
+		}
+	}
+
+	private SessionCollector collectorForThread(String threadId) {
+		SessionCollector collector = collectorPerThread.get(threadId);
+
+		if (collector == null) {
+			collector = new SessionCollector(threadId, outputDir, annotator, format);
+			collector.setArchive(archive);
+			collector.setOutputPool(outputPool);
+
+			Integer sessionCounter = sessionCounterPerEvictedThread.remove(threadId);
+
+			if (sessionCounter != null) {
+				collector.setSessionCounter(sessionCounter);
+			} else if (minSessionCounter > 1) {
+				// the thread ID might have been dropped
+				collector.setSessionCounter(minSessionCounter);
+			}
+
+			collectorPerThread.put(threadId, collector);
+			numCollectors = collectorPerThread.size();
+		}
+
+		return collector;
+	}
+
+	private static class Watermark extends AccessLogEntry {
+
+		private Watermark(long watermark) {
+			super("WATERMARK", watermark, "WATERMARK", "WATERMARK");
+		}
+
+	}
+
+	private static class CheckpointRequest extends AccessLogEntry {
+
+		private final Consumer<SplitCheckpoint.ShardState> callback;
+
+		private CheckpointRequest(Consumer<SplitCheckpoint.ShardState> callback) {
+			super("CHECKPOINT", 0, "CHECKPOINT", "CHECKPOINT");
+			this.callback = callback;
+		}
+
+	}
+
+}
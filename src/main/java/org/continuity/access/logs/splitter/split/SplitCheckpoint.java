@@ -0,0 +1,228 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Progress of a split, from which it can be resumed. It holds the position in the access logs up
+ * to which all entries have been processed and the state of all {@link SessionCollectorShard}s at
+ * that point, including the flushed size of the open session files.
+ */
+public class SplitCheckpoint {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private String file;
+
+	private long position;
+
+	private List<ShardState> shards = new ArrayList<>();
+
+	public SplitCheckpoint() {
+	}
+
+	public SplitCheckpoint(String file, long position) {
+		this.file = file;
+		this.position = position;
+	}
+
+	public static SplitCheckpoint read(Path checkpointFile) throws IOException {
+		return MAPPER.readValue(checkpointFile.toFile(), SplitCheckpoint.class);
+	}
+
+	/**
+	 * Writes the checkpoint to a temporary file first, which is then moved to the target, so that
+	 * the previous checkpoint stays intact if the process is killed while writing.
+	 *
+	 * @param checkpointFile
+	 *            The file to write to.
+	 * @throws IOException
+	 *             If the checkpoint cannot be written.
+	 */
+	public void write(Path checkpointFile) throws IOException {
+		Path tmpFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+		MAPPER.writeValue(tmpFile.toFile(), this);
+		Files.move(tmpFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Gets the file of the access logs the {@link #getPosition() position} refers to.
+	 *
+	 * @return The file.
+	 */
+	public String getFile() {
+		return file;
+	}
+
+	public void setFile(String file) {
+		this.file = file;
+	}
+
+	/**
+	 * Gets the position after the last processed entry.
+	 *
+	 * @return The position in bytes.
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	public void setPosition(long position) {
+		this.position = position;
+	}
+
+	/**
+	 * Gets the states of the shards, ordered by their index.
+	 *
+	 * @return The states.
+	 */
+	public List<ShardState> getShards() {
+		return shards;
+	}
+
+	public void setShards(List<ShardState> shards) {
+		this.shards = shards;
+	}
+
+	/**
+	 * State of a {@link SessionCollectorShard}, i.e., the states of its collectors, including
+	 * the evicted ones with their session counters only.
+	 */
+	public static class ShardState {
+
+		private List<CollectorState> collectors = new ArrayList<>();
+
+		private int minSessionCounter = 1;
+
+		public List<CollectorState> getCollectors() {
+			return collectors;
+		}
+
+		public void setCollectors(List<CollectorState> collectors) {
+			this.collectors = collectors;
+		}
+
+		/**
+		 * Gets the session counter the thread IDs without a kept session counter start with.
+		 *
+		 * @return The session counter.
+		 */
+		public int getMinSessionCounter() {
+			return minSessionCounter;
+		}
+
+		public void setMinSessionCounter(int minSessionCounter) {
+			this.minSessionCounter = minSessionCounter;
+		}
+
+	}
+
+	/**
+	 * State of a {@link SessionCollector}. If a session is open, it holds the session file with
+	 * its flushed size and the entry that has not been written, yet, because its delay is not
+	 * known.
+	 */
+	@JsonInclude(Include.NON_NULL)
+	public static class CollectorState {
+
+		private String threadId;
+
+		private int sessionCounter;
+
+		private String filename;
+
+		private long fileSize;
+
+		private Long lastTimestamp;
+
+		private String lastMethod;
+
+		private String lastPath;
+
+		private String lastContentType;
+
+		private String lastBody;
+
+		public String getThreadId() {
+			return threadId;
+		}
+
+		public void setThreadId(String threadId) {
+			this.threadId = threadId;
+		}
+
+		public int getSessionCounter() {
+			return sessionCounter;
+		}
+
+		public void setSessionCounter(int sessionCounter) {
+			this.sessionCounter = sessionCounter;
+		}
+
+		public String getFilename() {
+			return filename;
+		}
+
+		public void setFilename(String filename) {
+			this.filename = filename;
+		}
+
+		public long getFileSize() {
+			return fileSize;
+		}
+
+		public void setFileSize(long fileSize) {
+			this.fileSize = fileSize;
+		}
+
+		public Long getLastTimestamp() {
+			return lastTimestamp;
+		}
+
+		public void setLastTimestamp(Long lastTimestamp) {
+			this.lastTimestamp = lastTimestamp;
+		}
+
+		public String getLastMethod() {
+			return lastMethod;
+		}
+
+		public void setLastMethod(String lastMethod) {
+			this.lastMethod = lastMethod;
+		}
+
+		public String getLastPath() {
+			return lastPath;
+		}
+
+		public void setLastPath(String lastPath) {
+			this.lastPath = lastPath;
+		}
+
+		public String getLastContentType() {
+			return lastContentType;
+		}
+
+		public void setLastContentType(String lastContentType) {
+			this.lastContentType = lastContentType;
+		}
+
+		public String getLastBody() {
+			return lastBody;
+		}
+
+		public void setLastBody(String lastBody) {
+			this.lastBody = lastBody;
+		}
+
+	}
+
+}
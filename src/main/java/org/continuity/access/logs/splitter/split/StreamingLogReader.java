@@ -0,0 +1,276 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+import org.continuity.access.logs.splitter.AccessLogLineParser;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics;
+import org.continuity.access.logs.splitter.metrics.PipelineMetrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads an access logs file line by line. Files ending with {@code .gz} are decompressed as a
+ * stream. Reading and decompressing is done by a background thread that hands over batches of
+ * lines through a bounded queue, so that it overlaps with parsing in the calling thread. <br>
+ * The lines are split at the byte level, so that the {@link #position()} after each entry is
+ * known. For compressed files, it refers to the decompressed stream.
+ */
+public class StreamingLogReader implements LogEntrySource {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StreamingLogReader.class);
+
+	private static final PipelineMetrics METRICS = PipelineMetrics.get();
+
+	private static final String GZIP_EXT = ".gz";
+
+	private static final int BATCH_SIZE = 1024;
+
+	private static final int MAX_PENDING_BATCHES = 16;
+
+	private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+	private static final Batch END_OF_FILE = new Batch(0);
+
+	private final Path pathToLogs;
+
+	private final long startPosition;
+
+	private final BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+
+	private final AccessLogLineParser parser = new AccessLogLineParser();
+
+	private final Thread readerThread;
+
+	private volatile IOException failure;
+
+	private volatile boolean closed = false;
+
+	private Batch currentBatch = new Batch(0);
+
+	private int indexInBatch = 0;
+
+	private long position;
+
+	/**
+	 * Creates a reader that starts at a given position, e.g., to resume a previous read.
+	 *
+	 * @param pathToLogs
+	 *            The access logs file.
+	 * @param startPosition
+	 *            The position as returned by {@link #position()}.
+	 */
+	public StreamingLogReader(Path pathToLogs, long startPosition) {
+		this.pathToLogs = pathToLogs;
+		this.startPosition = startPosition;
+		this.position = startPosition;
+		this.readerThread = new Thread(this::readLines, "log-reader-" + pathToLogs.getFileName());
+		this.readerThread.setDaemon(true);
+		this.readerThread.start();
+	}
+
+	public StreamingLogReader(Path pathToLogs) {
+		this(pathToLogs, 0);
+	}
+
+	public static boolean isCompressed(Path path) {
+		return path.getFileName().toString().endsWith(GZIP_EXT);
+	}
+
+	@Override
+	public AccessLogEntry next() throws IOException, InterruptedException {
+		while (true) {
+			if (indexInBatch >= currentBatch.lines.size()) {
+				currentBatch = batches.take();
+				indexInBatch = 0;
+
+				if (currentBatch == END_OF_FILE) {
+					batches.put(END_OF_FILE);
+
+					if (failure != null) {
+						throw failure;
+					}
+
+					return null;
+				}
+			}
+
+			String line = currentBatch.lines.get(indexInBatch);
+			position = currentBatch.ends[indexInBatch++];
+			AccessLogEntry entry = parseLine(line);
+
+			if (entry != null) {
+				return entry;
+			}
+		}
+	}
+
+	@Override
+	public long position() {
+		return position;
+	}
+
+	private AccessLogEntry parseLine(String line) {
+		METRICS.increment(Counter.LINES_READ);
+		AccessLogEntry entry;
+
+		try {
+			entry = parser.parse(line);
+		} catch (ParseException e) {
+			LOGGER.error("Cannot parse date!", e);
+			entry = null;
+		}
+
+		if (entry == null) {
+			METRICS.increment(Counter.PARSE_FAILURES);
+			LOGGER.error("Cannot parse line {}", line);
+		} else {
+			METRICS.increment(Counter.ENTRIES_PARSED);
+		}
+
+		return entry;
+	}
+
+	private void readLines() {
+		try (InputStream in = openStream()) {
+			byte[] buffer = new byte[INPUT_BUFFER_SIZE];
+			byte[] line = new byte[256];
+			int lineLength = 0;
+			long offset = startPosition;
+			boolean skipLineFeed = false;
+			Batch batch = new Batch(BATCH_SIZE);
+			int read = in.read(buffer);
+
+			while ((read >= 0) && !closed) {
+				for (int i = 0; i < read; i++) {
+					byte b = buffer[i];
+					offset++;
+
+					// same line terminators as BufferedReader: \n, \r, or \r\n
+					if (skipLineFeed && (b == '\n')) {
+						batch.extendLast(offset);
+					} else if ((b == '\n') || (b == '\r')) {
+						// the last line stays in the current batch, as its end might be extended
+						if (batch.isFull()) {
+							batches.put(batch);
+							batch = new Batch(BATCH_SIZE);
+						}
+
+						batch.add(new String(line, 0, lineLength, StandardCharsets.UTF_8), offset);
+						lineLength = 0;
+					} else {
+						if (lineLength == line.length) {
+							line = Arrays.copyOf(line, 2 * line.length);
+						}
+
+						line[lineLength++] = b;
+					}
+
+					skipLineFeed = b == '\r';
+				}
+
+				read = in.read(buffer);
+			}
+
+			if (lineLength > 0) {
+				if (batch.isFull()) {
+					batches.put(batch);
+					batch = new Batch(BATCH_SIZE);
+				}
+
+				batch.add(new String(line, 0, lineLength, StandardCharsets.UTF_8), offset);
+			}
+
+			if (!batch.lines.isEmpty()) {
+				batches.put(batch);
+			}
+		} catch (IOException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			// closed by the consumer
+			return;
+		}
+
+		try {
+			batches.put(END_OF_FILE);
+		} catch (InterruptedException e) {
+			// closed by the consumer
+		}
+	}
+
+	private InputStream openStream() throws IOException {
+		InputStream in = Files.newInputStream(pathToLogs);
+
+		if (isCompressed(pathToLogs)) {
+			// GZIPInputStream also reads concatenated gzip members
+			in = new GZIPInputStream(in, INPUT_BUFFER_SIZE);
+		}
+
+		long remaining = startPosition;
+
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+
+			if (skipped <= 0) {
+				in.close();
+				throw new IOException("Cannot skip to position " + startPosition + " of " + pathToLogs);
+			}
+
+			remaining -= skipped;
+		}
+
+		return in;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		readerThread.interrupt();
+	}
+
+	/**
+	 * Lines with the positions after their line terminators.
+	 */
+	private static class Batch {
+
+		private final List<String> lines;
+
+		private final long[] ends;
+
+		private Batch(int size) {
+			this.lines = new ArrayList<>(size);
+			this.ends = new long[size];
+		}
+
+		private void add(String line, long end) {
+			ends[lines.size()] = end;
+			lines.add(line);
+		}
+
+		/**
+		 * Moves the end of the last line behind the \n of a \r\n terminator.
+		 */
+		private void extendLast(long end) {
+			if (!lines.isEmpty()) {
+				ends[lines.size() - 1] = end;
+			}
+		}
+
+		private boolean isFull() {
+			return lines.size() == ends.length;
+		}
+
+	}
+
+}
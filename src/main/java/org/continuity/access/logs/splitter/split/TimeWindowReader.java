@@ -0,0 +1,74 @@
+package org.continuity.access.logs.splitter.split;
+
+import java.io.IOException;
+
+import org.continuity.access.logs.splitter.AccessLogEntry;
+
+/**
+ * Passes only the entries of a time window. Reading ends at an optional end position, e.g., as
+ * found by a {@link LogTimeIndex}, or at the first entry that is later than the end of the window
+ * by more than the tolerated disorder.
+ */
+public class TimeWindowReader implements LogEntrySource {
+
+	/** Entries are expected to be at most this much out of order. */
+	public static final long DISORDER_TOLERANCE = 60 * 1000;
+
+	private final LogEntrySource source;
+
+	private final long from;
+
+	private final long to;
+
+	private final long endPosition;
+
+	private boolean ended = false;
+
+	/**
+	 * Creates a reader.
+	 *
+	 * @param source
+	 *            The source to read from.
+	 * @param from
+	 *            The start of the window in milliseconds (inclusive).
+	 * @param to
+	 *            The end of the window in milliseconds (exclusive).
+	 * @param endPosition
+	 *            The position of the source at which reading ends or {@code -1} to read until the
+	 *            window has passed.
+	 */
+	public TimeWindowReader(LogEntrySource source, long from, long to, long endPosition) {
+		this.source = source;
+		this.from = from;
+		this.to = to;
+		this.endPosition = endPosition;
+	}
+
+	@Override
+	public AccessLogEntry next() throws IOException, InterruptedException {
+		while (!ended) {
+			AccessLogEntry entry = source.next();
+
+			if ((entry == null) || ((endPosition >= 0) && (source.position() > endPosition))) {
+				ended = true;
+			} else if ((entry.getTimestampMillis() >= from) && (entry.getTimestampMillis() < to)) {
+				return entry;
+			} else if ((entry.getTimestampMillis() - to) >= DISORDER_TOLERANCE) {
+				ended = true;
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public long position() {
+		return source.position();
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+}
@@ -0,0 +1,48 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+public class AccessLogEntryTest {
+
+	@Test
+	public void testSharedStrings() {
+		AccessLogEntry first = new AccessLogEntry(new String("10.0.0.1"), 1000, new String("GET"), "/foo");
+		AccessLogEntry second = new AccessLogEntry(new String("10.0.0.1"), 2000, new String("GET"), "/foo");
+
+		first.setContentType(new String("application/json"));
+		second.setContentType(new String("application/json"));
+		second.setBody(new String(""));
+
+		assertThat(second.getThreadId()).isSameAs(first.getThreadId());
+		assertThat(second.getRequestMethod()).isSameAs(first.getRequestMethod());
+		assertThat(second.getContentType()).isSameAs(first.getContentType());
+		assertThat(second.getBody()).isSameAs(AccessLogEntry.EMPTY_BODY);
+	}
+
+	@Test
+	public void testTimestamp() {
+		AccessLogEntry entry = new AccessLogEntry("tid", new Date(12345), "GET", "/foo");
+
+		assertThat(entry.getTimestampMillis()).isEqualTo(12345);
+		assertThat(entry.getTimestamp()).isEqualTo(new Date(12345));
+		assertThat(entry.withDelay(10).getTimestampMillis()).isEqualTo(12345);
+		assertThat(new AccessLogEntry(null, null, "GET", "/foo").getTimestamp()).isNull();
+	}
+
+	@Test
+	public void testFromCsvLine() {
+		AccessLogEntry entry = AccessLogEntry.fromCsvLine("\"500\",\"POST\",\"/foo\",\"application/json\",\"{\"\"a\"\":1}\"");
+
+		assertThat(entry.getDelay()).isEqualTo(500);
+		assertThat(entry.getRequestMethod()).isEqualTo("POST");
+		assertThat(entry.getPath()).isEqualTo("/foo");
+		assertThat(entry.getContentType()).isEqualTo("application/json");
+		assertThat(entry.getBody()).isEqualTo("{\"\"a\"\":1}");
+		assertThat(AccessLogEntry.fromCsvLine("\"500\",\"POST\",\"/foo\"")).isNull();
+	}
+
+}
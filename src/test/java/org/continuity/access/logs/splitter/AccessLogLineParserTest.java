@@ -0,0 +1,98 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AccessLogLineParserTest {
+
+	private static final Pattern REFERENCE_PATTERN = Pattern.compile("(.*) - - \\[([^\\]]+)\\] \"([A-Z]+) ([^\"]+) .+\" .*");
+
+	private static final String[] LINES = { "127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326",
+			"10.0.0.12 - - [29/Feb/2016:23:59:59 +0130] \"POST /foo/bar?id=42&x=y HTTP/1.1\" 201 17 \"-\" \"Mozilla/5.0 (X11)\"",
+			"user - - [01/Jan/2019:00:00:00 +0000] \"PUT /a b c HTTP/1.1\" 200 1", "a - - [b] - - [05/May/2018:10:11:12 -0000] \"DELETE /x HTTP/1.1\" 204 0",
+			"host - - [05/May/2018:10:11:12 +0200] \"GET /x HTTP/1.1\" 200", "host - - [05/May/2018:10:11:12 +0200] \"get /x HTTP/1.1\" 200 0",
+			"host - - [05/May/2018:10:11:12 +0200] \"GET /x\" 200 0", "host - - [] \"GET /x HTTP/1.1\" 200 0", "garbage", "" };
+
+	private AccessLogLineParser parser;
+
+	@Before
+	public void setup() {
+		parser = new AccessLogLineParser();
+	}
+
+	@Test
+	public void testSameAsRegex() throws ParseException {
+		for (String line : LINES) {
+			assertEqual(parser.parse(line), parseWithRegex(line), line);
+		}
+	}
+
+	@Test
+	public void testCachedTimestamp() throws ParseException {
+		AccessLogEntry first = parser.parse("a - - [10/Oct/2000:13:55:36 -0700] \"GET /1 HTTP/1.0\" 200 1");
+		AccessLogEntry second = parser.parse("b - - [10/Oct/2000:13:55:36 -0700] \"GET /2 HTTP/1.0\" 200 1");
+		AccessLogEntry third = parser.parse("c - - [10/Oct/2000:13:55:37 -0700] \"GET /3 HTTP/1.0\" 200 1");
+
+		assertThat(second.getTimestamp()).isEqualTo(first.getTimestamp()).isNotSameAs(first.getTimestamp());
+		assertThat(third.getTimestamp().getTime() - first.getTimestamp().getTime()).isEqualTo(1000);
+	}
+
+	@Test
+	public void testStandardTimestampIsCached() throws ParseException {
+		assertThat(parser.getCachedMillis()).isEqualTo(Long.MIN_VALUE);
+
+		AccessLogEntry first = parser.parse("a - - [10/Oct/2018:13:55:36 +0200] \"GET /1 HTTP/1.0\" 200 1");
+		long cached = parser.getCachedMillis();
+		AccessLogEntry second = parser.parse("b - - [10/Oct/2018:13:55:36 +0200] \"GET /2 HTTP/1.0\" 200 1");
+
+		assertThat(cached).isEqualTo(first.getTimestampMillis()).isEqualTo(1539172536000L);
+		assertThat(parser.getCachedMillis()).isEqualTo(cached).isEqualTo(second.getTimestampMillis());
+	}
+
+	@Test
+	public void testBufferRange() throws ParseException {
+		String buffer = "x - - [10/Oct/2000:13:55:36 -0700] \"GET /1 HTTP/1.0\" 200 1\ny - - [10/Oct/2000:13:55:36 -0700] \"GET /2 HTTP/1.0\" 200 1";
+		int newline = buffer.indexOf('\n');
+
+		assertThat(parser.parse(buffer, newline + 1, buffer.length()).getThreadId()).isEqualTo("y");
+		assertThat(parser.parse(buffer, 0, newline).getPath()).isEqualTo("/1");
+	}
+
+	@Test(expected = ParseException.class)
+	public void testInvalidDate() throws ParseException {
+		parser.parse("a - - [31/Feb/2000:13:55:36 -0700] \"GET /1 HTTP/1.0\" 200 1");
+	}
+
+	private AccessLogEntry parseWithRegex(String line) throws ParseException {
+		Matcher matcher = REFERENCE_PATTERN.matcher(line);
+
+		if (matcher.find()) {
+			Date timestamp = DateUtils.parseDateStrictly(matcher.group(2), Locale.ENGLISH, "dd/MMM/yyyy:HH:mm:ss Z");
+			return new AccessLogEntry(matcher.group(1), timestamp, matcher.group(3), matcher.group(4));
+		} else {
+			return null;
+		}
+	}
+
+	private void assertEqual(AccessLogEntry actual, AccessLogEntry expected, String line) {
+		if (expected == null) {
+			assertThat(actual).as(line).isNull();
+		} else {
+			assertThat(actual).as(line).isNotNull();
+			assertThat(actual.getThreadId()).as(line).isEqualTo(expected.getThreadId());
+			assertThat(actual.getTimestamp()).as(line).isEqualTo(expected.getTimestamp());
+			assertThat(actual.getRequestMethod()).as(line).isEqualTo(expected.getRequestMethod());
+			assertThat(actual.getPath()).as(line).isEqualTo(expected.getPath());
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.continuity.access.logs.splitter.generate.AccessLogsGenerator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccessLogsGeneratorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSameSeedSameOutput() throws IOException {
+		Path first = generate("first.log", 7);
+		Path second = generate("second.log", 7);
+		Path other = generate("other.log", 8);
+
+		assertThat(Files.readAllLines(first)).hasSize(2000).isEqualTo(Files.readAllLines(second)).isNotEqualTo(Files.readAllLines(other));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoThreadIds() {
+		new AccessLogsGenerator(folder.getRoot().toPath().resolve("none.log"), 10).setNumThreadIds(0);
+	}
+
+	private Path generate(String filename, long seed) throws IOException {
+		Path file = folder.getRoot().toPath().resolve(filename);
+
+		AccessLogsGenerator generator = new AccessLogsGenerator(file, 2000);
+		generator.setNumThreadIds(20);
+		generator.setMalformedProbability(0.01);
+		generator.setSeed(seed);
+		generator.generate();
+
+		return file;
+	}
+
+}
@@ -0,0 +1,67 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.continuity.access.logs.splitter.split.EntryRingBuffer;
+import org.junit.Test;
+
+public class EntryRingBufferTest {
+
+	@Test
+	public void testBatchedPublication() {
+		EntryRingBuffer ring = new EntryRingBuffer(6, 3);
+		assertThat(ring.getCapacity()).isEqualTo(8);
+
+		ring.offer(entry(0));
+		ring.offer(entry(1));
+		assertThat(ring.size()).isZero();
+
+		ring.offer(entry(2));
+		assertThat(ring.size()).isEqualTo(3);
+
+		ring.offer(entry(3));
+		ring.flush();
+		assertThat(ring.size()).isEqualTo(4);
+
+		AccessLogEntry[] batch = new AccessLogEntry[3];
+		assertThat(ring.drainTo(batch)).isEqualTo(3);
+		assertThat(batch).extracting(AccessLogEntry::getTimestampMillis).containsExactly(0L, 1L, 2L);
+		assertThat(ring.drainTo(batch)).isEqualTo(1);
+		assertThat(batch[0].getTimestampMillis()).isEqualTo(3);
+		assertThat(ring.size()).isZero();
+	}
+
+	@Test(timeout = 30000)
+	public void testBackpressure() throws InterruptedException {
+		int numEntries = 100000;
+		EntryRingBuffer ring = new EntryRingBuffer(16, 4);
+
+		Thread producer = new Thread(() -> {
+			for (int i = 0; i < numEntries; i++) {
+				ring.offer(entry(i));
+			}
+
+			ring.flush();
+		});
+		producer.start();
+
+		AccessLogEntry[] batch = new AccessLogEntry[8];
+		long expected = 0;
+
+		while (expected < numEntries) {
+			int size = ring.drainTo(batch);
+
+			for (int i = 0; i < size; i++) {
+				assertThat(batch[i].getTimestampMillis()).isEqualTo(expected++);
+			}
+		}
+
+		producer.join();
+		assertThat(ring.size()).isZero();
+	}
+
+	private AccessLogEntry entry(long timestamp) {
+		return new AccessLogEntry("thread", timestamp, "GET", "/");
+	}
+
+}
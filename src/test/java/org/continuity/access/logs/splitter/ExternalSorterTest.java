@@ -0,0 +1,69 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.continuity.access.logs.splitter.split.ExternalSorter;
+import org.continuity.access.logs.splitter.split.LogEntrySource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExternalSorterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testInMemory() throws IOException, InterruptedException {
+		testSort(Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testMultiplePasses() throws IOException, InterruptedException {
+		// spills every entry, which requires more than one merge pass
+		testSort(1);
+	}
+
+	private void testSort(long memoryBudget) throws IOException, InterruptedException {
+		Path runDir = folder.getRoot().toPath().resolve("runs");
+		Random rand = new Random(42);
+		List<AccessLogEntry> entries = new ArrayList<>();
+
+		for (int i = 0; i < (3 * ExternalSorter.MAX_FAN_IN); i++) {
+			// few distinct timestamps to check the stability
+			entries.add(new AccessLogEntry("thread-" + rand.nextInt(5), rand.nextInt(4) * 1000L, "GET", "/" + i));
+		}
+
+		List<AccessLogEntry> actual = new ArrayList<>();
+
+		try (ExternalSorter sorter = new ExternalSorter(runDir, memoryBudget)) {
+			for (AccessLogEntry entry : entries) {
+				sorter.add(entry);
+			}
+
+			try (LogEntrySource sorted = sorter.sorted()) {
+				AccessLogEntry entry;
+
+				while ((entry = sorted.next()) != null) {
+					actual.add(entry);
+				}
+			}
+		}
+
+		List<AccessLogEntry> expected = new ArrayList<>(entries);
+		expected.sort(Comparator.comparing(AccessLogEntry::getThreadId).thenComparingLong(AccessLogEntry::getTimestampMillis));
+
+		assertThat(actual).extracting(AccessLogEntry::getPath).containsExactlyElementsOf(expected.stream().map(AccessLogEntry::getPath)::iterator);
+		assertThat(actual).extracting(AccessLogEntry::getTimestampMillis).containsExactlyElementsOf(expected.stream().map(AccessLogEntry::getTimestampMillis)::iterator);
+		assertThat(Files.exists(runDir)).isFalse();
+	}
+
+}
@@ -0,0 +1,112 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.continuity.access.logs.splitter.split.FollowingLogReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FollowingLogReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+
+	private FollowingLogReader reader;
+
+	@Before
+	public void setup() throws IOException {
+		file = folder.getRoot().toPath().resolve("access.log");
+		append(file, line("/1"), line("/2"));
+		reader = new FollowingLogReader(file);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		reader.close();
+	}
+
+	@Test(timeout = 20000)
+	public void testFollowGrowingFile() throws IOException, InterruptedException {
+		assertThat(reader.next().getPath()).isEqualTo("/1");
+		assertThat(reader.next().getPath()).isEqualTo("/2");
+
+		appendLater(file, 200, line("/3").substring(0, 20));
+		appendLater(file, 400, line("/3").substring(20), line("/4"));
+
+		assertThat(reader.next().getPath()).isEqualTo("/3");
+		assertThat(reader.next().getPath()).isEqualTo("/4");
+	}
+
+	@Test(timeout = 20000)
+	public void testRotation() throws IOException, InterruptedException {
+		assertThat(reader.next().getPath()).isEqualTo("/1");
+		assertThat(reader.next().getPath()).isEqualTo("/2");
+
+		// written to the old file right before the rotation
+		append(file, line("/3"));
+		Files.move(file, file.resolveSibling("access.log.1"));
+		append(file, line("/4"));
+
+		assertThat(reader.next().getPath()).isEqualTo("/3");
+		assertThat(reader.next().getPath()).isEqualTo("/4");
+	}
+
+	@Test(timeout = 20000)
+	public void testTruncation() throws IOException, InterruptedException {
+		assertThat(reader.next().getPath()).isEqualTo("/1");
+		assertThat(reader.next().getPath()).isEqualTo("/2");
+
+		Files.write(file, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+		append(file, line("/3"));
+
+		assertThat(reader.next().getPath()).isEqualTo("/3");
+	}
+
+	@Test(timeout = 20000)
+	public void testClose() throws IOException, InterruptedException {
+		assertThat(reader.next().getPath()).isEqualTo("/1");
+		assertThat(reader.next().getPath()).isEqualTo("/2");
+
+		new Thread(() -> {
+			try {
+				Thread.sleep(200);
+				reader.close();
+			} catch (IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}).start();
+
+		assertThat(reader.next()).isNull();
+	}
+
+	private void appendLater(Path file, long delay, String... content) {
+		new Thread(() -> {
+			try {
+				Thread.sleep(delay);
+				append(file, content);
+			} catch (IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}).start();
+	}
+
+	private void append(Path file, String... content) throws IOException {
+		Files.write(file, String.join("", content).getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	private String line(String path) {
+		return "127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET " + path + " HTTP/1.0\" 200 2326\n";
+	}
+
+}
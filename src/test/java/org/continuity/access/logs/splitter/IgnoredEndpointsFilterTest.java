@@ -0,0 +1,108 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.continuity.access.logs.splitter.split.IgnoredEndpointsFilter;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IgnoredEndpointsFilterTest {
+
+	private IgnoredEndpointsFilter filter;
+
+	@Before
+	public void setup() {
+		filter = new IgnoredEndpointsFilter(Arrays.asList("GET /health", "# comment", "", "POST /static/*", "* /metrics*", "GET /users/*/avatar", "GET /a*b*c", "invalid"));
+	}
+
+	@Test
+	public void testExact() {
+		assertThat(filter.isIgnored("GET", "/health")).isTrue();
+		assertThat(filter.isIgnored("GET", "/health?verbose=true")).isFalse();
+		assertThat(filter.isIgnored("POST", "/health")).isFalse();
+	}
+
+	@Test
+	public void testPrefix() {
+		assertThat(filter.isIgnored("POST", "/static/")).isTrue();
+		assertThat(filter.isIgnored("POST", "/static/img/logo.png")).isTrue();
+		assertThat(filter.isIgnored("POST", "/static")).isFalse();
+		assertThat(filter.isIgnored("GET", "/static/img/logo.png")).isFalse();
+	}
+
+	@Test
+	public void testAnyMethod() {
+		assertThat(filter.isIgnored("GET", "/metrics")).isTrue();
+		assertThat(filter.isIgnored("DELETE", "/metrics?format=json")).isTrue();
+		assertThat(filter.isIgnored("DELETE", "/metric")).isFalse();
+	}
+
+	@Test
+	public void testPattern() {
+		assertThat(filter.isIgnored("GET", "/users/42/avatar")).isTrue();
+		assertThat(filter.isIgnored("GET", "/users/42/43/avatar")).isTrue();
+		assertThat(filter.isIgnored("GET", "/users/42/avatar?size=big")).isFalse();
+		assertThat(filter.isIgnored("GET", "/users/42")).isFalse();
+		assertThat(filter.isIgnored("GET", "/abbbcbc")).isTrue();
+		assertThat(filter.isIgnored("GET", "/abcb")).isFalse();
+	}
+
+	@Test
+	public void testManyPatternsSharingPrefix() {
+		List<String> rules = new ArrayList<>();
+
+		for (int i = 0; i < 5000; i++) {
+			rules.add("GET /api/*/resource" + i);
+		}
+
+		IgnoredEndpointsFilter many = new IgnoredEndpointsFilter(rules);
+
+		assertThat(many.isIgnored("GET", "/api/v1/resource4999")).isTrue();
+		assertThat(many.isIgnored("GET", "/api/v1/x/resource0")).isTrue();
+		assertThat(many.isIgnored("GET", "/api/v1/resource5000")).isFalse();
+		assertThat(many.isIgnored("POST", "/api/v1/resource1")).isFalse();
+	}
+
+	@Test
+	public void testSameAsRegex() {
+		Random rand = new Random(42);
+
+		for (int round = 0; round < 200; round++) {
+			List<String> rules = new ArrayList<>();
+			List<Pattern> references = new ArrayList<>();
+
+			for (int i = 0; i < 5; i++) {
+				String path = "/" + randomString(rand, "ab/*", 6);
+				rules.add("GET " + path);
+				references.add(Pattern.compile(Arrays.stream(path.split("\\*", -1)).map(Pattern::quote).reduce((a, b) -> a + ".*" + b).get(), Pattern.DOTALL));
+			}
+
+			IgnoredEndpointsFilter random = new IgnoredEndpointsFilter(rules);
+
+			for (int i = 0; i < 50; i++) {
+				String path = "/" + randomString(rand, "ab/", 8);
+				boolean expected = references.stream().anyMatch(r -> r.matcher(path).matches());
+
+				assertThat(random.isIgnored("GET", path)).as(rules + " " + path).isEqualTo(expected);
+			}
+		}
+	}
+
+	private String randomString(Random rand, String alphabet, int maxLength) {
+		StringBuilder builder = new StringBuilder();
+		int length = rand.nextInt(maxLength + 1);
+
+		for (int i = 0; i < length; i++) {
+			builder.append(alphabet.charAt(rand.nextInt(alphabet.length())));
+		}
+
+		return builder.toString();
+	}
+
+}
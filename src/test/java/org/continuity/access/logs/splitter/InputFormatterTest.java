@@ -0,0 +1,97 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.continuity.access.logs.splitter.split.InputFormatter;
+import org.continuity.idpa.annotation.DataType;
+import org.continuity.idpa.annotation.DirectListInput;
+import org.continuity.idpa.annotation.RandomStringInput;
+import org.continuity.idpa.annotation.json.JsonArray;
+import org.continuity.idpa.annotation.json.JsonDerivedValue;
+import org.continuity.idpa.annotation.json.JsonInput;
+import org.continuity.idpa.annotation.json.JsonItem;
+import org.continuity.idpa.annotation.json.JsonObject;
+import org.continuity.idpa.annotation.json.JsonStaticValue;
+import org.junit.Test;
+
+public class InputFormatterTest {
+
+	private final InputFormatter formatter = new InputFormatter();
+
+	@Test
+	public void testRandomString() {
+		RandomStringInput input = new RandomStringInput();
+		input.setTemplate("user-[a-f0-3]{12}\\.[^!-z]{2}");
+
+		assertThat(formatter.getInputString(input)).isEqualTo("user-${__RandomString(12,0123abcdef,)}.${__RandomString(2,{|}~,)}");
+	}
+
+	@Test
+	public void testCachedPerInstance() {
+		RandomStringInput input = new RandomStringInput();
+		input.setTemplate("[a-z]{3}");
+
+		String inputString = formatter.getInputString(input);
+		assertThat(formatter.getInputString(input)).isSameAs(inputString);
+
+		RandomStringInput equalInput = new RandomStringInput();
+		equalInput.setTemplate("[a-z]{3}");
+		assertThat(formatter.getInputString(equalInput)).isEqualTo(inputString).isNotSameAs(inputString);
+	}
+
+	@Test
+	public void testLegacyJson() {
+		JsonInput object = new JsonInput();
+		object.setType(DataType.OBJECT);
+		object.setItems(Arrays.asList(legacyItem("name", DataType.STRING, "a \"quoted\" name"), legacyItem("count", DataType.NUMBER, "42")));
+
+		JsonInput array = new JsonInput();
+		array.setType(DataType.ARRAY);
+		array.setItems(Arrays.asList(legacyItem(null, DataType.STRING, "x"), object));
+
+		assertThat(formatter.getInputString(array)).isEqualTo("[\"x\",{\"name\":\"a \\\"quoted\\\" name\",\"count\":42}]");
+	}
+
+	@Test
+	public void testJson() {
+		JsonStaticValue staticValue = new JsonStaticValue();
+		staticValue.setValue("static");
+
+		DirectListInput data = new DirectListInput();
+		data.setData(Arrays.asList("derived"));
+		JsonDerivedValue derivedValue = new JsonDerivedValue();
+		derivedValue.setInput(data);
+
+		JsonArray array = new JsonArray();
+		array.setItems(Arrays.asList(staticValue, derivedValue));
+
+		Map<String, JsonItem> items = new LinkedHashMap<>();
+		items.put("value", staticValue);
+		items.put("values", array);
+		items.put("empty", new JsonObject());
+
+		JsonObject object = new JsonObject();
+		object.setItems(items);
+
+		JsonInput input = new JsonInput();
+		input.setJson(object);
+
+		assertThat(formatter.getInputString(input)).isEqualTo("{\"value\":\"static\",\"values\":[\"static\",\"derived\"],\"empty\":{}}");
+	}
+
+	private JsonInput legacyItem(String name, DataType type, String value) {
+		DirectListInput data = new DirectListInput();
+		data.setData(Arrays.asList(value));
+
+		JsonInput item = new JsonInput();
+		item.setName(name);
+		item.setType(type);
+		item.setInput(data);
+		return item;
+	}
+
+}
@@ -0,0 +1,33 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.continuity.access.logs.splitter.metrics.LatencyHistogram;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i * 100);
+		}
+
+		assertThat(histogram.getCount()).isEqualTo(100);
+		assertThat(histogram.getPercentile(50)).isBetween(5000L, 2 * 5000L);
+		assertThat(histogram.getPercentile(99)).isBetween(9900L, 10000L);
+		assertThat(histogram.getPercentile(100)).isEqualTo(10000);
+		assertThat(histogram.summary()).containsEntry("mean", 5050L).containsEntry("max", 10000L);
+	}
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertThat(histogram.getCount()).isZero();
+		assertThat(histogram.getPercentile(99)).isZero();
+	}
+
+}
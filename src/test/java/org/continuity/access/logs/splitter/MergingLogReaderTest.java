@@ -0,0 +1,74 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.continuity.access.logs.splitter.split.LogEntrySource;
+import org.continuity.access.logs.splitter.split.MergingLogReader;
+import org.continuity.access.logs.splitter.split.StreamingLogReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MergingLogReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMergeByTimestamp() throws IOException, InterruptedException {
+		Path node1 = write("node1.log", "10:00:00 /a1", "10:00:02 /a2", "10:00:05 /a3");
+		Path node2 = write("node2.log", "10:00:01 /b1", "10:00:02 /b2", "10:00:03 /b3", "10:00:09 /b4");
+		Path node3 = write("node3.log");
+
+		assertThat(read(node1, node2, node3)).containsExactly("/a1", "/b1", "/a2", "/b2", "/b3", "/a3", "/b4");
+	}
+
+	@Test
+	public void testSingleSource() throws IOException, InterruptedException {
+		Path node1 = write("node1.log", "10:00:00 /a1", "10:00:02 /a2");
+
+		assertThat(read(node1)).containsExactly("/a1", "/a2");
+	}
+
+	private List<String> read(Path... files) throws IOException, InterruptedException {
+		List<LogEntrySource> sources = new ArrayList<>();
+
+		for (Path file : files) {
+			sources.add(new StreamingLogReader(file));
+		}
+
+		List<String> paths = new ArrayList<>();
+
+		try (MergingLogReader reader = new MergingLogReader(sources)) {
+			AccessLogEntry entry = reader.next();
+
+			while (entry != null) {
+				paths.add(entry.getPath());
+				entry = reader.next();
+			}
+		}
+
+		return paths;
+	}
+
+	private Path write(String name, String... timedPaths) throws IOException {
+		StringBuilder builder = new StringBuilder();
+
+		for (String timedPath : timedPaths) {
+			String[] parts = timedPath.split(" ");
+			builder.append("127.0.0.1 - - [10/Oct/2000:").append(parts[0]).append(" -0700] \"GET ").append(parts[1]).append(" HTTP/1.0\" 200 2326\n");
+		}
+
+		Path file = folder.getRoot().toPath().resolve(name);
+		Files.write(file, builder.toString().getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.continuity.access.logs.splitter.split.RequestUriTrie;
+import org.continuity.commons.idpa.RequestUriMapper;
+import org.continuity.idpa.application.Application;
+import org.continuity.idpa.application.HttpEndpoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestUriTrieTest {
+
+	private static final String[][] ENDPOINTS = { { "GET", "/foo/{bar}/{rest:*}" }, { "GET", "/foo/{id}" }, { "GET", "/foo/bar" }, { "POST", "/foo/{id}" }, { "GET", "/" },
+			{ "GET", "/a//b/" }, { "GET", "/{all:*}" }, { "DELETE", "users/{id}/items/{item}" }, { "DELETE", "/users/me/items/{item}" } };
+
+	private static final String[][] REQUESTS = { { "GET", "/foo/bar" }, { "GET", "/foo/baz" }, { "GET", "/foo/bar/baz" }, { "GET", "/foo/bar/baz/blub/" }, { "POST", "/foo/bar" },
+			{ "POST", "/foo" }, { "GET", "/" }, { "GET", "" }, { "GET", "///" }, { "GET", "/a//b" }, { "GET", "/a/b" }, { "GET", "whatever" }, { "PUT", "/foo/bar" },
+			{ "DELETE", "/users/me/items/42" }, { "DELETE", "/users/you/items/42/" }, { "DELETE", "/users/me/items" }, { "GET", "/foo/{id}" } };
+
+	private Application application;
+
+	private RequestUriTrie trie;
+
+	private RequestUriMapper mapper;
+
+	@Before
+	public void setup() {
+		application = new Application();
+
+		for (int i = 0; i < ENDPOINTS.length; i++) {
+			HttpEndpoint endpoint = new HttpEndpoint();
+			endpoint.setId("endpoint" + i);
+			endpoint.setMethod(ENDPOINTS[i][0]);
+			endpoint.setPath(ENDPOINTS[i][1]);
+			application.addEndpoint(endpoint);
+		}
+
+		trie = new RequestUriTrie(application);
+		mapper = new RequestUriMapper(application);
+	}
+
+	@Test
+	public void testSameAsRequestUriMapper() {
+		for (String[] request : REQUESTS) {
+			HttpEndpoint expected = mapper.map(request[1], request[0]);
+			HttpEndpoint actual = trie.map(request[1], request[0]);
+
+			assertThat(actual).as(request[0] + " " + request[1]).isSameAs(expected);
+		}
+	}
+
+	@Test
+	public void testPrecedence() {
+		assertThat(trie.map("/foo/bar", "GET").getId()).isEqualTo("endpoint2");
+		assertThat(trie.map("/foo/baz", "GET").getId()).isEqualTo("endpoint1");
+		assertThat(trie.map("/foo/bar/baz", "GET").getId()).isEqualTo("endpoint0");
+		assertThat(trie.map("/users/me/items/42", "DELETE").getId()).isEqualTo("endpoint7");
+		assertThat(trie.map("/foo/bar", "PUT")).isNull();
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.continuity.access.logs.splitter.split.RotatedLogReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RotatedLogReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = folder.getRoot().toPath();
+
+		Files.write(dir.resolve("access.log"), lines("/5", "/6").replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8));
+		write(dir.resolve("access.log.1"), "/3", "/4");
+		writeGzipped(dir.resolve("access.log.2.gz"), "/1", "/2");
+		write(dir.resolve("access.log.10"), "/0");
+	}
+
+	@Test
+	public void testOrder() throws IOException {
+		assertThat(RotatedLogReader.resolveFiles(dir).stream().map(p -> p.getFileName().toString()).collect(Collectors.toList())).containsExactly("access.log.10",
+				"access.log.2.gz", "access.log.1", "access.log");
+	}
+
+	@Test
+	public void testGlob() throws IOException {
+		assertThat(RotatedLogReader.resolveFiles(dir.resolve("access.log.*")).stream().map(p -> p.getFileName().toString()).collect(Collectors.toList()))
+				.containsExactly("access.log.10", "access.log.2.gz", "access.log.1");
+	}
+
+	@Test
+	public void testDateStamps() throws IOException {
+		Path dated = folder.newFolder("dated").toPath();
+		write(dated.resolve("access.log.2024010112"), "/1");
+		write(dated.resolve("access.log.2024010113"), "/2");
+		write(dated.resolve("access.log"), "/3");
+
+		assertThat(RotatedLogReader.resolveFiles(dated).stream().map(p -> p.getFileName().toString()).collect(Collectors.toList())).containsExactly("access.log.2024010112",
+				"access.log.2024010113", "access.log");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSeveralLogsInDirectory() throws IOException {
+		write(dir.resolve("error.log"), "/x");
+		RotatedLogReader.resolveFiles(dir);
+	}
+
+	@Test
+	public void testSequential() throws IOException, InterruptedException {
+		assertThat(readPaths(1)).containsExactly("/0", "/1", "/2", "/3", "/4", "/5", "/6");
+	}
+
+	@Test
+	public void testParallel() throws IOException, InterruptedException {
+		assertThat(readPaths(4)).containsExactly("/0", "/1", "/2", "/3", "/4", "/5", "/6");
+	}
+
+	@Test
+	public void testResumeSequential() throws IOException, InterruptedException {
+		testResume(1);
+	}
+
+	@Test
+	public void testResumeParallel() throws IOException, InterruptedException {
+		testResume(4);
+	}
+
+	private void testResume(int parsingThreads) throws IOException, InterruptedException {
+		for (int numRead = 0; numRead < 7; numRead++) {
+			Path file;
+			long position;
+
+			try (RotatedLogReader reader = RotatedLogReader.of(dir, parsingThreads)) {
+				for (int i = 0; i < numRead; i++) {
+					reader.next();
+				}
+
+				file = reader.positionFile();
+				position = reader.position();
+			}
+
+			List<String> paths = new ArrayList<>();
+
+			try (RotatedLogReader reader = RotatedLogReader.of(dir, parsingThreads)) {
+				if (file != null) {
+					reader.resumeAt(file, position);
+				}
+
+				AccessLogEntry entry = reader.next();
+
+				while (entry != null) {
+					paths.add(entry.getPath());
+					entry = reader.next();
+				}
+			}
+
+			assertThat(paths).as("resumed after " + numRead).containsExactlyElementsOf(Arrays.asList("/0", "/1", "/2", "/3", "/4", "/5", "/6").subList(numRead, 7));
+		}
+	}
+
+	private List<String> readPaths(int parsingThreads) throws IOException, InterruptedException {
+		List<String> paths = new ArrayList<>();
+
+		try (RotatedLogReader reader = RotatedLogReader.of(dir, parsingThreads)) {
+			AccessLogEntry entry = reader.next();
+
+			while (entry != null) {
+				paths.add(entry.getPath());
+				entry = reader.next();
+			}
+		}
+
+		return paths;
+	}
+
+	private void write(Path file, String... paths) throws IOException {
+		Files.write(file, lines(paths).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void writeGzipped(Path file, String... paths) throws IOException {
+		// two gzip members, as produced by appending to a compressed file
+		for (String path : paths) {
+			try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+				out.write(lines(path).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	private String lines(String... paths) {
+		StringBuilder builder = new StringBuilder();
+
+		for (String path : paths) {
+			builder.append("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET ").append(path).append(" HTTP/1.0\" 200 2326\n");
+		}
+
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,137 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.continuity.access.logs.splitter.format.SessionArchive;
+import org.continuity.access.logs.splitter.format.SessionArchiveWriter;
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.format.SessionWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionArchiveTest {
+
+	private static final int NUM_SESSIONS = 20;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCsv() throws IOException {
+		testRoundTrip(SessionFormat.CSV, false);
+	}
+
+	@Test
+	public void testCompressedBinary() throws IOException {
+		testRoundTrip(SessionFormat.BINARY, true);
+	}
+
+	@Test
+	public void testIncompleteSegment() throws IOException {
+		Path dir = folder.getRoot().toPath();
+		writeArchive(dir, SessionFormat.CSV, false);
+
+		// the last session, which has been appended first, has not been flushed completely
+		long numSegments;
+
+		try (Stream<Path> files = Files.list(dir)) {
+			numSegments = files.filter(p -> p.getFileName().toString().endsWith(".seg")).count();
+		}
+
+		Path lastSegment = dir.resolve("segment-" + (numSegments - 1) + ".seg");
+
+		try (FileChannel channel = FileChannel.open(lastSegment, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 1);
+		}
+
+		try (SessionArchive archive = SessionArchive.open(dir)) {
+			assertThat(archive.size()).isEqualTo(NUM_SESSIONS - 1);
+			assertThat(archive.getName(0)).isEqualTo("session-01");
+		}
+	}
+
+	@Test
+	public void testAutoFlush() throws IOException {
+		Path dir = folder.getRoot().toPath();
+
+		try (SessionArchiveWriter writer = new SessionArchiveWriter(dir, SessionFormat.CSV, false)) {
+			writer.setAutoFlush(true);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+			try (SessionWriter sessionWriter = SessionFormat.CSV.newWriter(out)) {
+				for (AccessLogEntry entry : session(3)) {
+					sessionWriter.write(entry);
+				}
+			}
+
+			writer.append("session-03", out.toByteArray(), out.size());
+
+			// readable without closing the writer
+			try (SessionArchive archive = SessionArchive.open(dir)) {
+				assertThat(archive.size()).isEqualTo(1);
+				assertThat(paths(archive.read(0))).containsExactlyElementsOf(paths(session(3)));
+			}
+		}
+	}
+
+	private void testRoundTrip(SessionFormat format, boolean compressed) throws IOException {
+		Path dir = folder.getRoot().toPath();
+		writeArchive(dir, format, compressed);
+
+		assertThat(SessionArchive.isArchive(dir)).isTrue();
+		assertThat(Files.exists(dir.resolve("segment-2.seg"))).isTrue();
+
+		try (SessionArchive archive = SessionArchive.open(dir)) {
+			assertThat(archive.size()).isEqualTo(NUM_SESSIONS);
+
+			for (int i = 0; i < NUM_SESSIONS; i++) {
+				// ordered by name
+				int session = Integer.parseInt(archive.getName(i).substring("session-".length()));
+				assertThat(paths(archive.read(i))).containsExactlyElementsOf(paths(session(session)));
+			}
+		}
+	}
+
+	private void writeArchive(Path dir, SessionFormat format, boolean compressed) throws IOException {
+		try (SessionArchiveWriter archive = new SessionArchiveWriter(dir, format, compressed)) {
+			archive.setMaxSegmentSize(compressed ? 200 : 1000);
+
+			for (int i = NUM_SESSIONS - 1; i >= 0; i--) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+				try (SessionWriter writer = format.newWriter(out)) {
+					for (AccessLogEntry entry : session(i)) {
+						writer.write(entry);
+					}
+				}
+
+				archive.append("session-" + String.format("%02d", i), out.toByteArray(), out.size());
+			}
+		}
+	}
+
+	private List<AccessLogEntry> session(int index) {
+		return IntStream.range(0, 1 + (index % 5)).mapToObj(i -> {
+			AccessLogEntry entry = new AccessLogEntry(null, null, "GET", "/session/" + index + "/" + i);
+			entry.setDelay(i * 100);
+			return entry;
+		}).collect(Collectors.toList());
+	}
+
+	private List<String> paths(List<AccessLogEntry> entries) {
+		return entries.stream().map(AccessLogEntry::getPath).collect(Collectors.toList());
+	}
+
+}
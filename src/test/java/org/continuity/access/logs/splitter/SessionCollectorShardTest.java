@@ -0,0 +1,137 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.split.AccessLogsAnnotator;
+import org.continuity.access.logs.splitter.split.SessionCollectorShard;
+import org.continuity.access.logs.splitter.split.SplitCheckpoint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionCollectorShardTest {
+
+	private static final long MINUTE = 60 * 1000;
+
+	private static final String THREAD_A = "10.0.0.1";
+
+	private static final String THREAD_B = "10.0.0.2";
+
+	private static final String THREAD_C = "10.0.0.3";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testEvictIdleCollectors() throws IOException, InterruptedException, ExecutionException {
+		Path dir = folder.getRoot().toPath();
+		SessionCollectorShard shard = new SessionCollectorShard(dir, AccessLogsAnnotator.NOOP);
+		Thread thread = new Thread(shard);
+		thread.start();
+
+		shard.offer(entry(THREAD_A, 0, "/a1"));
+		shard.offer(entry(THREAD_B, 0, "/b1"));
+		shard.offer(entry(THREAD_A, 10 * 1000, "/a2"));
+		shard.advanceWatermark(20 * MINUTE);
+
+		awaitCheckpoint(shard);
+		assertThat(shard.getNumCollectors()).isEqualTo(2);
+
+		shard.offer(entry(THREAD_A, 40 * MINUTE, "/a3"));
+		shard.advanceWatermark(40 * MINUTE);
+
+		List<SplitCheckpoint.CollectorState> states = awaitCheckpoint(shard).getCollectors();
+		assertThat(shard.getNumCollectors()).isEqualTo(1);
+		assertThat(states).filteredOn(s -> THREAD_B.equals(s.getThreadId())).extracting(SplitCheckpoint.CollectorState::getSessionCounter).containsExactly(2);
+		assertThat(Files.exists(session(dir, THREAD_B, 1))).isTrue();
+
+		// recreated with the next session number
+		shard.offer(entry(THREAD_B, 41 * MINUTE, "/b2"));
+		shard.stop();
+		thread.join();
+
+		assertThat(Files.readAllLines(session(dir, THREAD_B, 1))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/b1\",\"*/*\",\"\"");
+		assertThat(Files.readAllLines(session(dir, THREAD_B, 2))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/b2\",\"*/*\",\"\"");
+		assertThat(Files.readAllLines(session(dir, THREAD_A, 2))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/a3\",\"*/*\",\"\"");
+		assertThat(shard.getNumCollectors()).isZero();
+	}
+
+	@Test
+	public void testDropEvictedSessionCounters() throws IOException, InterruptedException, ExecutionException {
+		Path dir = folder.getRoot().toPath();
+		SessionCollectorShard shard = new SessionCollectorShard(dir, AccessLogsAnnotator.NOOP);
+		shard.setMaxEvictedThreads(1);
+		Thread thread = new Thread(shard);
+		thread.start();
+
+		shard.offer(entry(THREAD_A, 0, "/a1"));
+		shard.offer(entry(THREAD_B, 0, "/b1"));
+		shard.advanceWatermark(40 * MINUTE);
+
+		SplitCheckpoint.ShardState state = awaitCheckpoint(shard);
+		assertThat(state.getCollectors()).hasSize(1);
+		assertThat(state.getMinSessionCounter()).isEqualTo(2);
+
+		// neither the kept nor the dropped thread ID nor a new one may overwrite a session
+		shard.offer(entry(THREAD_A, 41 * MINUTE, "/a2"));
+		shard.offer(entry(THREAD_B, 41 * MINUTE, "/b2"));
+		shard.offer(entry(THREAD_C, 41 * MINUTE, "/c1"));
+		shard.stop();
+		thread.join();
+
+		assertThat(Files.readAllLines(session(dir, THREAD_A, 1))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/a1\",\"*/*\",\"\"");
+		assertThat(Files.readAllLines(session(dir, THREAD_A, 2))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/a2\",\"*/*\",\"\"");
+		assertThat(Files.readAllLines(session(dir, THREAD_B, 1))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/b1\",\"*/*\",\"\"");
+		assertThat(Files.readAllLines(session(dir, THREAD_B, 2))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/b2\",\"*/*\",\"\"");
+		assertThat(Files.readAllLines(session(dir, THREAD_C, 2))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/c1\",\"*/*\",\"\"");
+	}
+
+	@Test
+	public void testRestoreEvictedThread() throws IOException, InterruptedException {
+		Path dir = folder.getRoot().toPath();
+		SessionCollectorShard shard = new SessionCollectorShard(dir, AccessLogsAnnotator.NOOP, SessionFormat.BINARY);
+
+		SplitCheckpoint.CollectorState state = new SplitCheckpoint.CollectorState();
+		state.setThreadId(THREAD_B);
+		state.setSessionCounter(2);
+		shard.restore(state);
+
+		assertThat(shard.getNumCollectors()).isZero();
+
+		Thread thread = new Thread(shard);
+		thread.start();
+		shard.offer(entry(THREAD_B, 0, "/b2"));
+		shard.stop();
+		thread.join();
+
+		assertThat(SessionFormat.BINARY.read(session(dir, THREAD_B, 2, SessionFormat.BINARY))).extracting(AccessLogEntry::getPath).containsExactly("/b2");
+		assertThat(Files.exists(session(dir, THREAD_B, 2))).isFalse();
+	}
+
+	private SplitCheckpoint.ShardState awaitCheckpoint(SessionCollectorShard shard) throws InterruptedException, ExecutionException {
+		CompletableFuture<SplitCheckpoint.ShardState> state = new CompletableFuture<>();
+		shard.checkpoint(state::complete);
+		return state.get();
+	}
+
+	private AccessLogEntry entry(String threadId, long timestamp, String path) {
+		return new AccessLogEntry(threadId, timestamp, "GET", path);
+	}
+
+	private Path session(Path dir, String threadId, int counter) {
+		return session(dir, threadId, counter, SessionFormat.CSV);
+	}
+
+	private Path session(Path dir, String threadId, int counter, SessionFormat format) {
+		return dir.resolve("session-" + threadId.hashCode() + "-" + counter + format.getExtension());
+	}
+
+}
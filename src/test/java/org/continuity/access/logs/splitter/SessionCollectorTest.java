@@ -0,0 +1,114 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.format.SessionOutputPool;
+import org.continuity.access.logs.splitter.split.AccessLogsAnnotator;
+import org.continuity.access.logs.splitter.split.SessionCollector;
+import org.continuity.access.logs.splitter.split.SplitCheckpoint;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionCollectorTest {
+
+	private static final long MINUTE = 60 * 1000;
+
+	private static final String THREAD_ID = "127.0.0.1";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path dir;
+
+	private SessionCollector collector;
+
+	@Before
+	public void setup() {
+		dir = folder.getRoot().toPath();
+		collector = new SessionCollector(THREAD_ID, dir, AccessLogsAnnotator.NOOP);
+	}
+
+	@Test
+	public void testFinishIdleSession() throws IOException {
+		collector.process(entry(0, "/1"));
+		collector.process(entry(10 * 1000, "/2"));
+
+		assertThat(collector.isIdle(30 * MINUTE)).isFalse();
+		assertThat(collector.isIdle(32 * MINUTE)).isTrue();
+
+		collector.finish();
+
+		assertThat(Files.readAllLines(session(1))).containsExactly(AccessLogEntry.HEADER, "\"10000\",\"GET\",\"/1\",\"*/*\",\"\"", "\"30000\",\"GET\",\"/2\",\"*/*\",\"\"");
+		// without an open session, the collector can be evicted
+		assertThat(collector.isIdle(0)).isTrue();
+		assertThat(collector.getSessionCounter()).isEqualTo(2);
+
+		collector.process(entry(40 * MINUTE, "/3"));
+		collector.finish();
+
+		assertThat(Files.readAllLines(session(2))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/3\",\"*/*\",\"\"");
+	}
+
+	@Test
+	public void testResumeFromCheckpoint() throws IOException {
+		collector.process(entry(0, "/1"));
+		collector.process(entry(1000, "/2"));
+		collector.finish();
+		collector.process(entry(40 * MINUTE, "/3"));
+
+		SplitCheckpoint.CollectorState state = collector.checkpoint();
+
+		// written after the checkpoint before the split has been killed
+		collector.process(entry(40 * MINUTE + 1000, "/4"));
+		collector.checkpoint();
+
+		SessionCollector restored = new SessionCollector(state, dir, AccessLogsAnnotator.NOOP, SessionFormat.CSV, null);
+		restored.process(entry(40 * MINUTE + 1000, "/4"));
+		restored.process(entry(80 * MINUTE, "/5"));
+		restored.finish();
+
+		assertThat(Files.readAllLines(session(2))).containsExactly(AccessLogEntry.HEADER, "\"1000\",\"GET\",\"/3\",\"*/*\",\"\"", "\"30000\",\"GET\",\"/4\",\"*/*\",\"\"");
+		assertThat(Files.readAllLines(session(3))).containsExactly(AccessLogEntry.HEADER, "\"30000\",\"GET\",\"/5\",\"*/*\",\"\"");
+	}
+
+	@Test
+	public void testResumeThroughOutputPool() throws IOException {
+		collector.process(entry(0, "/1"));
+		collector.process(entry(1000, "/2"));
+
+		SplitCheckpoint.CollectorState state = collector.checkpoint();
+		collector.process(entry(2000, "/3"));
+		collector.checkpoint();
+
+		try (SessionOutputPool pool = new SessionOutputPool(1)) {
+			SessionCollector restored = new SessionCollector(state, dir, AccessLogsAnnotator.NOOP, SessionFormat.CSV, pool);
+			restored.process(entry(2000, "/3"));
+			restored.flush();
+			pool.sync();
+
+			assertThat(pool.getNumOpenFiles()).isEqualTo(1);
+
+			restored.finish();
+		}
+
+		assertThat(Files.readAllLines(session(1))).containsExactly(AccessLogEntry.HEADER, "\"1000\",\"GET\",\"/1\",\"*/*\",\"\"", "\"1000\",\"GET\",\"/2\",\"*/*\",\"\"",
+				"\"30000\",\"GET\",\"/3\",\"*/*\",\"\"");
+	}
+
+	private AccessLogEntry entry(long timestamp, String path) {
+		return new AccessLogEntry(THREAD_ID, new Date(timestamp), "GET", path);
+	}
+
+	private Path session(int counter) {
+		return dir.resolve("session-" + THREAD_ID.hashCode() + "-" + counter + ".csv");
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.continuity.access.logs.splitter.format.SessionFormat;
+import org.continuity.access.logs.splitter.format.SessionWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionFormatTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<AccessLogEntry> entries = Arrays.asList(entry(1000, "GET", "/foo", "*/*", ""), entry(30000, "POST", "/bar", "application/json", "{\"\u00e4\":\"\u20ac\"}"),
+			entry(0, "GET", "/foo", "*/*", ""), entry(-5, "GET", "/foo?a=b", "*/*", ""), entry(7, "PUT", "/baz", "application/json", "{\"\"a\"\":\"\"x\"\",\"\"b\"\":\"\"\"\"}"),
+			entry(Long.MIN_VALUE + 1, "POST", "/baz", "application/json", "[\"a\",\"b\"]"));
+
+	@Test
+	public void testCsv() throws IOException {
+		testRoundTrip(SessionFormat.CSV);
+	}
+
+	@Test
+	public void testBinary() throws IOException {
+		testRoundTrip(SessionFormat.BINARY);
+	}
+
+	@Test
+	public void testBinaryAppend() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("session-1.bin");
+
+		try (SessionWriter writer = SessionFormat.BINARY.openWriter(file, false)) {
+			writer.write(entries.get(0));
+			writer.write(entries.get(1));
+		}
+
+		// continues with the dictionary of the existing file
+		try (SessionWriter writer = SessionFormat.BINARY.openWriter(file, true)) {
+			writer.write(entries.get(2));
+			writer.write(entries.get(3));
+		}
+
+		assertThat(toStrings(SessionFormat.BINARY.read(file))).containsExactlyElementsOf(toStrings(entries.subList(0, 4)));
+	}
+
+	@Test
+	public void testCsvMalformedLines() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("session-1.csv");
+		String content = AccessLogEntry.HEADER + "\n\"1\",\"GET\",\"/a\",\"*/*\",\"\"\r\n\"x\",\"GET\",\"/b\",\"*/*\",\"\"\n\"2\",\"GET\",\"/c\"\n\n\"3\",\"GET\",\"/d\",\"*/*\",\"\"";
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+		List<AccessLogEntry> read = SessionFormat.CSV.read(file);
+
+		assertThat(read).extracting(AccessLogEntry::getPath).containsExactly("/a", "/d");
+		assertThat(read).extracting(AccessLogEntry::getDelay).containsExactly(1L, 3L);
+	}
+
+	@Test
+	public void testForFile() {
+		assertThat(SessionFormat.forFile(folder.getRoot().toPath().resolve("session-1.bin"))).isEqualTo(SessionFormat.BINARY);
+		assertThat(SessionFormat.forFile(folder.getRoot().toPath().resolve("session-1.csv"))).isEqualTo(SessionFormat.CSV);
+	}
+
+	private void testRoundTrip(SessionFormat format) throws IOException {
+		Path file = folder.getRoot().toPath().resolve("session-1" + format.getExtension());
+
+		try (SessionWriter writer = format.openWriter(file, false)) {
+			for (AccessLogEntry entry : entries) {
+				writer.write(entry);
+			}
+		}
+
+		assertThat(toStrings(format.read(file))).containsExactlyElementsOf(toStrings(entries));
+	}
+
+	private List<String> toStrings(List<AccessLogEntry> entries) {
+		return entries.stream().map(AccessLogEntry::toString).collect(Collectors.toList());
+	}
+
+	private static AccessLogEntry entry(long delay, String method, String path, String contentType, String body) {
+		AccessLogEntry entry = new AccessLogEntry(null, null, method, path);
+		entry.setDelay(delay);
+		entry.setContentType(contentType);
+		entry.setBody(body);
+		return entry;
+	}
+
+}
@@ -0,0 +1,96 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.continuity.access.logs.splitter.format.SessionOutputPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionOutputPoolTest {
+
+	private static final int NUM_FILES = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReopenForAppend() throws IOException {
+		Path dir = folder.getRoot().toPath();
+		Files.write(dir.resolve("file-0"), "to be overwritten".getBytes(StandardCharsets.UTF_8));
+
+		byte[] chunk = new byte[SessionOutputPool.CHUNK_SIZE + 100];
+		OutputStream[] streams = new OutputStream[NUM_FILES];
+
+		try (SessionOutputPool pool = new SessionOutputPool(2)) {
+			for (int i = 0; i < NUM_FILES; i++) {
+				streams[i] = pool.open(dir.resolve("file-" + i), false);
+			}
+
+			// each round exceeds a chunk, so that all files are written and evicted repeatedly
+			for (int round = 0; round < 3; round++) {
+				for (int i = 0; i < NUM_FILES; i++) {
+					Arrays.fill(chunk, (byte) ('a' + round + i));
+					streams[i].write(chunk);
+				}
+			}
+
+			for (int i = 0; i < NUM_FILES; i++) {
+				streams[i].flush();
+			}
+
+			pool.sync();
+			assertThat(pool.getNumOpenFiles()).isLessThanOrEqualTo(2);
+			assertThat(Files.size(dir.resolve("file-0"))).isEqualTo(3 * chunk.length);
+
+			for (OutputStream stream : streams) {
+				stream.close();
+			}
+		}
+
+		for (int i = 0; i < NUM_FILES; i++) {
+			byte[] content = Files.readAllBytes(dir.resolve("file-" + i));
+			assertThat(content).hasSize(3 * chunk.length);
+
+			for (int round = 0; round < 3; round++) {
+				assertThat(content[round * chunk.length]).isEqualTo((byte) ('a' + round + i));
+				assertThat(content[((round + 1) * chunk.length) - 1]).isEqualTo((byte) ('a' + round + i));
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyAndAppendedFiles() throws IOException {
+		Path dir = folder.getRoot().toPath();
+		Files.write(dir.resolve("appended"), "first,".getBytes(StandardCharsets.UTF_8));
+
+		try (SessionOutputPool pool = new SessionOutputPool()) {
+			pool.open(dir.resolve("empty"), false).close();
+
+			try (OutputStream out = pool.open(dir.resolve("appended"), true)) {
+				out.write("second".getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		assertThat(dir.resolve("empty")).exists();
+		assertThat(Files.size(dir.resolve("empty"))).isZero();
+		assertThat(new String(Files.readAllBytes(dir.resolve("appended")), StandardCharsets.UTF_8)).isEqualTo("first,second");
+	}
+
+	@Test(expected = IOException.class)
+	public void testFailingWrite() throws IOException {
+		Path dir = folder.getRoot().toPath();
+
+		try (SessionOutputPool pool = new SessionOutputPool()) {
+			pool.open(dir.resolve("missing").resolve("file"), false).close();
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.continuity.access.logs.splitter.combine.SessionsCombiner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionsCombinerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path sessions;
+
+	@Before
+	public void writeSessions() throws IOException {
+		sessions = folder.newFolder("sessions").toPath();
+
+		for (int i = 0; i < 5; i++) {
+			Files.write(sessions.resolve("session-" + i + ".csv"),
+					Arrays.asList(AccessLogEntry.HEADER, "\"" + (i * 1000) + "\",\"GET\",\"/a/" + i + "\",\"*/*\",\"\"", "\"30000\",\"POST\",\"/b\",\"*/*\",\"\""));
+		}
+	}
+
+	@Test
+	public void testCompleteAndIndependentOfThreads() throws IOException, InterruptedException {
+		Path single = combine("single", 1);
+		Path parallel = combine("parallel", 4);
+
+		for (int iteration = 1; iteration <= 3; iteration++) {
+			for (int session = 1; session <= 7; session++) {
+				Path file = Paths.get("iteration-" + iteration, "session-" + session + ".csv");
+
+				assertThat(parallel.resolve(file)).exists();
+				assertThat(Files.readAllLines(parallel.resolve(file))).isEqualTo(Files.readAllLines(single.resolve(file)));
+			}
+		}
+	}
+
+	@Test
+	public void testSkipDirectories() throws IOException, InterruptedException {
+		// left behind by a killed external sort
+		Files.createDirectories(sessions.resolve(".runs"));
+		Files.write(sessions.resolve(".runs").resolve("run-0.bin"), new byte[] { 1, 2, 3 });
+
+		Path output = combine("skipped", 2);
+
+		assertThat(Files.readAllLines(output.resolve("iteration-1").resolve("session-1.csv"))).startsWith(AccessLogEntry.HEADER).doesNotContainNull();
+	}
+
+	@Test(expected = IOException.class)
+	public void testFailingWrite() throws IOException, InterruptedException {
+		Path output = folder.newFolder("failing").toPath();
+
+		// a directory in place of a session file cannot be written
+		Files.createDirectories(output.resolve("iteration-2").resolve("session-3.csv"));
+
+		SessionsCombiner combiner = new SessionsCombiner(sessions, output, 4, 2);
+		combiner.setThreads(2);
+		combiner.combine();
+	}
+
+	private Path combine(String name, int threads) throws IOException, InterruptedException {
+		Path output = folder.getRoot().toPath().resolve(name);
+		SessionsCombiner combiner = new SessionsCombiner(sessions, output, 7, 3);
+		combiner.setThreads(threads);
+		combiner.combine();
+		return output;
+	}
+
+}
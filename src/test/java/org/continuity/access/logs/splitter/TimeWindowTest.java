@@ -0,0 +1,131 @@
+package org.continuity.access.logs.splitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.continuity.access.logs.splitter.split.LogTimeIndex;
+import org.continuity.access.logs.splitter.split.RotatedLogReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TimeWindowTest {
+
+	private static final int NUM_LINES = 10000;
+
+	private static final long START = Instant.parse("2019-01-01T00:00:00Z").toEpochMilli();
+
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+
+	private final List<Long> lineStarts = new ArrayList<>();
+
+	@Before
+	public void setup() throws IOException {
+		file = folder.getRoot().toPath().resolve("access.log");
+		StringBuilder builder = new StringBuilder();
+
+		// one entry per second, with some malformed lines and carriage returns in between
+		for (int i = 0; i < NUM_LINES; i++) {
+			lineStarts.add((long) builder.length());
+			builder.append(line(i)).append((i % 3) == 0 ? "\r\n" : "\n");
+
+			if ((i % 100) == 50) {
+				builder.append("malformed line\n");
+			}
+		}
+
+		Files.write(file, builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testFindFirstAtOrAfter() throws IOException {
+		try (LogTimeIndex index = new LogTimeIndex(file)) {
+			assertThat(index.findFirstAtOrAfter(START - 1000)).isEqualTo(0);
+
+			for (int i : new int[] { 0, 1, 50, 51, 4321, 9998, 9999 }) {
+				assertThat(index.findFirstAtOrAfter(second(i))).as("line " + i).isEqualTo(lineStarts.get(i));
+				assertThat(index.findFirstAtOrAfter(second(i) - 500)).as("before line " + i).isEqualTo(lineStarts.get(i));
+			}
+
+			assertThat(index.findFirstAtOrAfter(second(NUM_LINES))).isEqualTo(index.size());
+		}
+
+		try (LogTimeIndex index = new LogTimeIndex(file)) {
+			index.findFirstAtOrAfter(second(6789));
+			assertThat(index.getNumProbes()).isLessThan(NUM_LINES / 50);
+		}
+	}
+
+	@Test
+	public void testSequential() throws IOException, InterruptedException {
+		assertThat(readPaths(file, 1, second(3000), second(3500))).isEqualTo(paths(3000, 3500));
+		assertThat(readPaths(file, 1, Long.MIN_VALUE, second(10))).isEqualTo(paths(0, 10));
+		assertThat(readPaths(file, 1, second(9990), Long.MAX_VALUE)).isEqualTo(paths(9990, NUM_LINES));
+		assertThat(readPaths(file, 1, second(NUM_LINES + 1000), Long.MAX_VALUE)).isEmpty();
+	}
+
+	@Test
+	public void testParallel() throws IOException, InterruptedException {
+		assertThat(readPaths(file, 4, second(3000), second(3500))).isEqualTo(paths(3000, 3500));
+	}
+
+	@Test
+	public void testCompressed() throws IOException, InterruptedException {
+		Path compressed = folder.getRoot().toPath().resolve("access.log.1.gz");
+
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+			Files.copy(file, out);
+		}
+
+		assertThat(readPaths(compressed, 1, second(3000), second(3500))).isEqualTo(paths(3000, 3500));
+	}
+
+	private List<String> readPaths(Path pathToLogs, int parsingThreads, long from, long to) throws IOException, InterruptedException {
+		List<String> paths = new ArrayList<>();
+
+		try (RotatedLogReader reader = RotatedLogReader.of(pathToLogs, parsingThreads)) {
+			reader.setTimeWindow(from, to);
+			AccessLogEntry entry = reader.next();
+
+			while (entry != null) {
+				paths.add(entry.getPath());
+				entry = reader.next();
+			}
+		}
+
+		return paths;
+	}
+
+	private List<String> paths(int from, int to) {
+		return IntStream.range(from, to).mapToObj(i -> "/" + i).collect(Collectors.toList());
+	}
+
+	private long second(int i) {
+		return START + (i * 1000L);
+	}
+
+	private String line(int i) {
+		return "127.0.0.1 - - [" + FORMATTER.format(Instant.ofEpochMilli(second(i))) + "] \"GET /" + i + " HTTP/1.0\" 200 2326";
+	}
+
+}